@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.benchmarks;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import se.kth.swim.internal.MemberState;
+import se.kth.swim.internal.MembershipTable;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+import se.sics.p2ptoolbox.util.network.NatType;
+
+/**
+ * Synthetic cluster for the benchmarks: addresses, a membership table in a
+ * given state mix and a stream of gossiped updates. Everything derives from a
+ * fixed seed so runs are comparable.
+ */
+public class Cluster {
+
+    public static final long SEED = 1234L;
+    public static final int LAMBDA = 4;
+    public static final int MAX_MESSAGE_SIZE = 1400;
+    //probe rounds
+    public static final long TOMBSTONE_ROUNDS = 30;
+    //share of the nodes behind a nat, each with two open parents
+    private static final double NATED_RATIO = 0.2;
+
+    /**
+     * Mix of the updates the node receives.
+     */
+    public static enum Mix {
+
+        //steady state: alive updates at the incarnation we already have
+        STABLE,
+        //mostly steady with some suspicions and failures
+        MIXED,
+        //every update is news, nodes flap between suspected and alive
+        CHURN
+    }
+
+    public final NatedAddress self;
+    public final NatedAddress[] nodes;
+    public final MembershipTable table;
+    private final Random rand;
+    private final Mix mix;
+    private int round = 1;
+
+    public Cluster(int size, Mix mix) {
+        this.rand = new Random(SEED);
+        this.mix = mix;
+        InetAddress ip;
+        try {
+            ip = InetAddress.getByName("10.0.0.1");
+        } catch (UnknownHostException ex) {
+            throw new RuntimeException(ex);
+        }
+        this.self = new BasicNatedAddress(new BasicAddress(ip, 10000, 0));
+        this.nodes = new NatedAddress[size];
+        int open = Math.max(2, (int) (size * (1 - NATED_RATIO)));
+        for (int i = 0; i < size; i++) {
+            BasicAddress base = new BasicAddress(ip, 10000 + (i + 1) % 50000, i + 1);
+            if (i < open) {
+                nodes[i] = new BasicNatedAddress(base);
+            } else {
+                Set<NatedAddress> parents = new HashSet<NatedAddress>();
+                parents.add(nodes[rand.nextInt(open)]);
+                parents.add(nodes[rand.nextInt(open)]);
+                nodes[i] = new BasicNatedAddress(base, NatType.NAT, parents);
+            }
+        }
+        this.table = new MembershipTable(LAMBDA, rand, TOMBSTONE_ROUNDS);
+        for (NatedAddress node : nodes) {
+            table.update(node, initialState(), 0);
+        }
+    }
+
+    private MemberState initialState() {
+        if (mix == Mix.STABLE) {
+            return MemberState.ALIVE;
+        }
+        double p = rand.nextDouble();
+        return p < 0.9 ? MemberState.ALIVE : (p < 0.97 ? MemberState.SUSPECT : MemberState.DEAD);
+    }
+
+    public NatedAddress randomNode() {
+        return nodes[rand.nextInt(nodes.length)];
+    }
+
+    /**
+     * @return the state of the next gossiped update for node
+     */
+    public MemberState nextState() {
+        switch (mix) {
+            case STABLE:
+                return MemberState.ALIVE;
+            case MIXED:
+                double p = rand.nextDouble();
+                return p < 0.8 ? MemberState.ALIVE : (p < 0.95 ? MemberState.SUSPECT : MemberState.DEAD);
+            default:
+                return rand.nextBoolean() ? MemberState.ALIVE : MemberState.SUSPECT;
+        }
+    }
+
+    /**
+     * @return the incarnation of the next gossiped update
+     */
+    public int nextIncarnation() {
+        switch (mix) {
+            case STABLE:
+                return 0;
+            case MIXED:
+                //a new generation every n updates lets dead nodes rejoin
+                return round++ / nodes.length + rand.nextInt(3);
+            default:
+                //newer than anything seen so far
+                return round++;
+        }
+    }
+
+    public Random random() {
+        return rand;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kth.swim.NodeAndCounter;
+import se.kth.swim.internal.PiggybackAssembler;
+import se.kth.swim.msg.net.NetMsg;
+import se.kth.swim.msg.net.PiggyPong;
+import se.kth.swim.msg.serializer.SwimCodec;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Encoding and decoding of a full pong, as assembled from a synthetic
+ * membership table. Run with {@code -prof gc} for the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int nodes;
+
+    @Param({"STABLE", "MIXED", "CHURN"})
+    public String mix;
+
+    private PiggyPong pong;
+    private ByteBuffer buffer;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setup() {
+        Cluster cluster = new Cluster(nodes, Cluster.Mix.valueOf(mix));
+        NatedAddress dst = cluster.nodes[0];
+        PiggybackAssembler.Snapshot snapshot = new PiggybackAssembler(Cluster.MAX_MESSAGE_SIZE)
+                .assemble(cluster.table, cluster.self, dst, new NodeAndCounter(cluster.self, 0));
+        pong = new PiggyPong(cluster.self, dst, snapshot.alive, snapshot.suspect, snapshot.dead, dst, 1);
+        buffer = ByteBuffer.allocate(Cluster.MAX_MESSAGE_SIZE);
+        encoded = ByteBuffer.wrap(SwimCodec.encode(pong));
+    }
+
+    @Benchmark
+    public int encodedSize() {
+        return SwimCodec.encodedSize(pong);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        buffer.clear();
+        SwimCodec.encode(pong, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public NetMsg decode() {
+        encoded.rewind();
+        return SwimCodec.decode(encoded);
+    }
+}
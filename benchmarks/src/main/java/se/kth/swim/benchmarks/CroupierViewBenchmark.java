@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.benchmarks;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kth.swim.croupier.CroupierSelectionPolicy;
+import se.kth.swim.croupier.internal.CroupierContainer;
+import se.kth.swim.croupier.internal.CroupierView;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+/**
+ * Shuffle operations of the croupier view, for views well beyond the default
+ * size of 10. A group of peers with full views shuffles at random in pairs,
+ * the way CroupierComp drives its views.
+ * <p>
+ * Run with {@code -prof gc}, the normalized allocation rate of
+ * {@link #shuffle()} is the bytes allocated per shuffle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CroupierViewBenchmark {
+
+    private static final int PEERS = 16;
+    //distinct nodes per view slot, so views overlap only partially
+    private static final int POPULATION_FACTOR = 4;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int viewSize;
+
+    @Param({"5", "50", "500"})
+    public int shuffleSize;
+
+    private Random rand;
+    //shuffle ids, sequential so that no secure random is drawn per exchange
+    private long shuffles;
+    private NatedAddress[] peers;
+    private CroupierView<Object>[] views;
+
+    @Setup
+    public void setup() {
+        rand = new Random(Cluster.SEED);
+        InetAddress ip;
+        try {
+            ip = InetAddress.getByName("10.0.0.1");
+        } catch (UnknownHostException ex) {
+            throw new RuntimeException(ex);
+        }
+        NatedAddress[] population = new NatedAddress[POPULATION_FACTOR * viewSize + PEERS];
+        for (int i = 0; i < population.length; i++) {
+            population[i] = new BasicNatedAddress(new BasicAddress(ip, 10000 + i % 50000, i));
+        }
+        peers = new NatedAddress[PEERS];
+        views = new CroupierView[PEERS];
+        for (int i = 0; i < PEERS; i++) {
+            peers[i] = population[i];
+            views[i] = new CroupierView<Object>((BasicAddress) peers[i].getBaseAdr(), viewSize, rand);
+            //fill the view as a stream of shuffles from one source would
+            Set<CroupierContainer<Object>> descriptors = new HashSet<CroupierContainer<Object>>();
+            while (descriptors.size() < viewSize) {
+                NatedAddress node = population[PEERS + rand.nextInt(population.length - PEERS)];
+                descriptors.add(new CroupierContainer<Object>(node, null, rand.nextInt(20)));
+            }
+            views[i].selectToKeep(nextShuffleId(), population[(i + 1) % PEERS], descriptors);
+        }
+    }
+
+    @Benchmark
+    public CroupierView<Object> incrementAges() {
+        views[0].incrementDescriptorAges();
+        return views[0];
+    }
+
+    @Benchmark
+    public NatedAddress selectPeer() {
+        return views[0].selectPeerToShuffleWith(CroupierSelectionPolicy.RANDOM, false, 0);
+    }
+
+    @Benchmark
+    public Set<CroupierContainer<Object>> initiatorCopySet() {
+        return views[0].initiatorCopySet(nextShuffleId(), shuffleSize);
+    }
+
+    /**
+     * one complete exchange between two peers, both sides
+     */
+    @Benchmark
+    public int shuffle() {
+        int a = rand.nextInt(PEERS);
+        int b = (a + 1 + rand.nextInt(PEERS - 1)) % PEERS;
+        CroupierView<Object> initiator = views[a];
+        CroupierView<Object> receiver = views[b];
+
+        UUID shuffleId = nextShuffleId();
+        initiator.incrementDescriptorAges();
+        Set<CroupierContainer<Object>> request = initiator.initiatorCopySet(shuffleId, shuffleSize);
+        request.add(new CroupierContainer<Object>(peers[a], null));
+
+        receiver.incrementDescriptorAges();
+        Set<CroupierContainer<Object>> response = receiver.receiverCopySet(shuffleId, shuffleSize);
+        response.add(new CroupierContainer<Object>(peers[b], null));
+        receiver.selectToKeep(shuffleId, peers[a], request);
+
+        initiator.selectToKeep(shuffleId, peers[b], response);
+        return initiator.size() + receiver.size();
+    }
+
+    private UUID nextShuffleId() {
+        return new UUID(0, shuffles++);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kth.swim.NodeAndCounter;
+import se.kth.swim.internal.Member;
+import se.kth.swim.internal.MemberSampler;
+import se.kth.swim.internal.MemberState;
+import se.kth.swim.internal.MergeKernel;
+import se.kth.swim.internal.PiggybackAssembler;
+import se.kth.swim.internal.ProbeTracker;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Hot paths of the failure detector on a synthetic membership table: building
+ * the piggyback of a pong, merging gossiped updates, choosing probe targets and
+ * indirect helpers, and matching acks to outstanding probes.
+ * <p>
+ * Run with {@code -prof gc} for the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MembershipBenchmark {
+
+    //same as SwimComp
+    private static final int K_INDIRECT_PING = 10;
+    private static final int PROBE_CAPACITY = 64;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int nodes;
+
+    @Param({"STABLE", "MIXED", "CHURN"})
+    public String mix;
+
+    private Cluster cluster;
+    private PiggybackAssembler assembler;
+    private NodeAndCounter self;
+    private MemberSampler sampler;
+    private Member[] helpers;
+    private ProbeTracker tracker;
+
+    @Setup
+    public void setup() {
+        cluster = new Cluster(nodes, Cluster.Mix.valueOf(mix));
+        assembler = new PiggybackAssembler(Cluster.MAX_MESSAGE_SIZE);
+        self = new NodeAndCounter(cluster.self, 0);
+        sampler = new MemberSampler(cluster.random());
+        helpers = new Member[K_INDIRECT_PING];
+        tracker = new ProbeTracker(PROBE_CAPACITY);
+    }
+
+    /**
+     * a pong after one membership change, the snapshot is rebuilt
+     */
+    @Benchmark
+    public PiggybackAssembler.Snapshot assembleFresh() {
+        Member member = cluster.table.get(cluster.randomNode());
+        cluster.table.update(member.getNode(), member.getState(), member.getIncarnation());
+        assembler.nextRound();
+        return assembler.assemble(cluster.table, cluster.self, cluster.randomNode(), self);
+    }
+
+    /**
+     * further pongs of the same round, the snapshot is shared
+     */
+    @Benchmark
+    public PiggybackAssembler.Snapshot assembleCached() {
+        return assembler.assemble(cluster.table, cluster.self, cluster.nodes[0], self);
+    }
+
+    /**
+     * one gossiped update through the merge rules of SwimComp, without the
+     * suspicion timers
+     */
+    @Benchmark
+    public MergeKernel.Action merge() {
+        NatedAddress node = cluster.randomNode();
+        MemberState remote = cluster.nextState();
+        int incarnation = cluster.nextIncarnation();
+        Member member = cluster.table.get(node);
+        MergeKernel.Action action = MergeKernel.merge(member, remote, incarnation);
+        switch (action) {
+            case ALIVE:
+            case REJOIN:
+                cluster.table.update(node, MemberState.ALIVE, incarnation);
+                break;
+            case SUSPECT:
+                cluster.table.update(node, MemberState.SUSPECT, incarnation);
+                break;
+            case DEAD:
+                cluster.table.update(node, MemberState.DEAD, incarnation);
+                break;
+            default:
+                break;
+        }
+        return action;
+    }
+
+    /**
+     * the next probe target and the helpers of its indirect probe
+     */
+    @Benchmark
+    public int probeTarget() {
+        Member target = cluster.table.nextProbe();
+        return sampler.sample(cluster.table.probes(), K_INDIRECT_PING, target, helpers);
+    }
+
+    /**
+     * a probe started, acked and finished
+     */
+    @Benchmark
+    public ProbeTracker.Probe ackProbe() {
+        NatedAddress target = cluster.randomNode();
+        ProbeTracker.Probe probe = tracker.get(tracker.start(target).getSeq(), target);
+        tracker.finish(probe);
+        return probe;
+    }
+}
@@ -18,13 +18,18 @@
  */
 package se.kth.swim;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.io.File;
+import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import se.kth.swim.aggregator.ConvergenceEngine;
+import se.kth.swim.aggregator.LatencyHistogram;
+import se.kth.swim.aggregator.MetricsSink;
+import se.kth.swim.aggregator.StatusView;
 import se.kth.swim.msg.net.NetStatus;
+import se.kth.swim.msg.net.NetStatusAck;
 import se.sics.kompics.ComponentDefinition;
 import se.sics.kompics.Handler;
 import se.sics.kompics.Init;
@@ -32,6 +37,9 @@ import se.sics.kompics.Positive;
 import se.sics.kompics.Start;
 import se.sics.kompics.Stop;
 import se.sics.kompics.network.Network;
+import se.sics.kompics.timer.CancelTimeout;
+import se.sics.kompics.timer.SchedulePeriodicTimeout;
+import se.sics.kompics.timer.Timeout;
 import se.sics.kompics.timer.Timer;
 import se.sics.p2ptoolbox.util.network.NatedAddress;
 
@@ -43,20 +51,30 @@ public class AggregatorComp extends ComponentDefinition {
     private static final Logger log = LoggerFactory.getLogger(AggregatorComp.class);
     private Positive<Network> network = requires(Network.class);
     private Positive<Timer> timer = requires(Timer.class);
-    
-	private int cycle;
-	private int nodeWithRightInformation;
 
+    //same as the status period of the nodes
+    private static final long METRICS_PERIOD = 2000;
+    //a node silent for three status periods is taken as failed
+    private static final long FAILURE_THRESHOLD = 6000;
 
     private final NatedAddress selfAddress;
+    private final ConvergenceEngine engine = new ConvergenceEngine(FAILURE_THRESHOLD);
+    private final File metricsFile;
+    private final long flushInterval;
+    private MetricsSink sink;
+    private UUID metricsTimeoutId;
+    //metrics periods elapsed, the clock of the engine
+    private long metricsRound = 0;
 
     public AggregatorComp(AggregatorInit init) {
         this.selfAddress = init.selfAddress;
+        this.metricsFile = init.metricsFile;
+        this.flushInterval = init.flushInterval;
         log.info("{} initiating...", new Object[]{selfAddress.getId()});
-        this.cycle = 0;
         subscribe(handleStart, control);
         subscribe(handleStop, control);
         subscribe(handleStatus, network);
+        subscribe(handleMetricsTimeout, timer);
     }
 
     private Handler<Start> handleStart = new Handler<Start>() {
@@ -64,6 +82,11 @@ public class AggregatorComp extends ComponentDefinition {
         @Override
         public void handle(Start event) {
             log.info("{} starting...", new Object[]{selfAddress});
+            if (metricsFile != null) {
+                //the sink writes one row per metrics period
+                sink = new MetricsSink(metricsFile, (int) Math.max(1, flushInterval / METRICS_PERIOD));
+            }
+            schedulePeriodicMetrics();
         }
 
     };
@@ -72,6 +95,13 @@ public class AggregatorComp extends ComponentDefinition {
         @Override
         public void handle(Stop event) {
             log.info("{} stopping...", new Object[]{selfAddress});
+            if (metricsTimeoutId != null) {
+                cancelPeriodicMetrics();
+            }
+            if (sink != null) {
+                sink.close();
+                sink = null;
+            }
         }
 
     };
@@ -80,45 +110,89 @@ public class AggregatorComp extends ComponentDefinition {
 
         @Override
         public void handle(NetStatus status) {
-        	
-        	Set<Integer> setAlive = new HashSet<Integer>() ;
-            for(NatedAddress nat : status.getContent().aliveNodes){
-            	setAlive.add(nat.getId());
-            }
-            Set<Integer> setSuspected = new HashSet<Integer>() ;
-            for(NatedAddress nat : status.getContent().suspectedNodes){
-            	setSuspected.add(nat.getId());
-            }
-            Set<Integer> setDead = new HashSet<Integer>() ;
-            for(NatedAddress nat : status.getContent().deadNodes){
-            	setDead.add(nat.getId());
-            }
-            if(status.getHeader().getSource().getId() == 0){
-            	if (setAlive.size() == 7 && setDead.size() == 2){
-            		nodeWithRightInformation++;
-            	}
-            		
-        		cycle++; 
-        		//DEBUG LOG
-        		log.info("CYCLE NUMBER has been incremented: {}, size alive : {}, size dead : {}, node with right information : {}", new Object[]{cycle, setAlive.size(), setDead.size(), nodeWithRightInformation});
-        		
-        		if(nodeWithRightInformation == 10){
-            		log.info("FINAL LOG, CONVERGE DONE cycles required : {}, size alive : {}, size dead : {}, node with right information : {}", new Object[]{cycle, setAlive.size(), setDead.size(), nodeWithRightInformation});
-
-        		}
-            }
-            
-//           log.info("{} status from:{} pings:{} aliveNodes :  suspected nodes : {}, deadNodes : {}", 
-//                    new Object[]{selfAddress.getId(), status.getHeader().getSource(), status.getContent().receivedPings, /*setAlive,*/ setSuspected, setDead});
+        	NatedAddress source = status.getHeader().getSource();
+        	StatusView view = engine.observe(source.getId(), status.getContent(), simulatedTime());
+        	if (view == null) {
+        		//missed changes, wait for the next full report
+        		return;
+        	}
+        	trigger(new NetStatusAck(selfAddress, source, view.getSeq()), network);
+        }
+    };
+
+    private Handler<MetricsTimeout> handleMetricsTimeout = new Handler<MetricsTimeout>() {
+
+        @Override
+        public void handle(MetricsTimeout event) {
+        	metricsRound++;
+        	long now = simulatedTime();
+        	engine.tick(now);
+        	if (sink != null) {
+        		sink.write(now, engine);
+        	}
+        	LatencyHistogram detection = engine.getDetection();
+        	LatencyHistogram dissemination = engine.getDissemination();
+        	TrafficStats traffic = engine.getTraffic();
+        	log.info("{} live:{} failed:{} convergence:{} false positives:{} false negatives:{}",
+        			new Object[]{selfAddress.getId(), engine.getLiveNodes(), engine.getFailedNodes(),
+        			engine.getConvergence(), engine.getFalsePositives(), engine.getFalseNegatives()});
+        	log.info("{} sent msgs:{} bytes:{} bytes per member:{} - pings:{} pongs:{} shuffles:{} relayed:{}",
+        			new Object[]{selfAddress.getId(), traffic.getSent(), traffic.getSentBytes(),
+        			engine.getLiveNodes() == 0 ? 0 : traffic.getSentBytes() / engine.getLiveNodes(),
+        			traffic.getSentBytes(TrafficStats.Kind.PING), traffic.getSentBytes(TrafficStats.Kind.PONG),
+        			traffic.getSentBytes(TrafficStats.Kind.SHUFFLE_REQUEST) + traffic.getSentBytes(TrafficStats.Kind.SHUFFLE_RESPONSE),
+        			traffic.getSentBytes(TrafficStats.Kind.RELAYED)});
+        	log.info("{} detection n:{} p50:{} p90:{} p99:{} max:{} dissemination n:{} p50:{} p90:{} p99:{} max:{}",
+        			new Object[]{selfAddress.getId(),
+        			detection.getCount(), detection.percentile(50), detection.percentile(90), detection.percentile(99), detection.getMax(),
+        			dissemination.getCount(), dissemination.percentile(50), dissemination.percentile(90), dissemination.percentile(99), dissemination.getMax()});
         }
     };
 
+    /**
+     * ms since start in simulated time, counted in whole metrics periods
+     */
+    private long simulatedTime() {
+        return metricsRound * METRICS_PERIOD;
+    }
+
+    private void schedulePeriodicMetrics() {
+        SchedulePeriodicTimeout spt = new SchedulePeriodicTimeout(METRICS_PERIOD, METRICS_PERIOD);
+        MetricsTimeout sc = new MetricsTimeout(spt);
+        spt.setTimeoutEvent(sc);
+        metricsTimeoutId = sc.getTimeoutId();
+        trigger(spt, timer);
+    }
+
+    private void cancelPeriodicMetrics() {
+        CancelTimeout cpt = new CancelTimeout(metricsTimeoutId);
+        trigger(cpt, timer);
+        metricsTimeoutId = null;
+    }
+
+    private static class MetricsTimeout extends Timeout {
+
+        public MetricsTimeout(SchedulePeriodicTimeout request) {
+            super(request);
+        }
+    }
+
     public static class AggregatorInit extends Init<AggregatorComp> {
 
         public final NatedAddress selfAddress;
+        //csv file the metrics of every cycle are appended to, null for logs only
+        public final File metricsFile;
+        //ms of simulated time between two writes to the metrics file
+        public final long flushInterval;
 
         public AggregatorInit(NatedAddress selfAddress) {
+            this(selfAddress, null, 0);
+        }
+
+        public AggregatorInit(NatedAddress selfAddress, File metricsFile, long flushInterval) {
             this.selfAddress = selfAddress;
+            this.metricsFile = metricsFile;
+            this.flushInterval = flushInterval;
         }
     }
 }
@@ -70,12 +70,14 @@ public class NatTraversalComp extends ComponentDefinition {
     private UUID heartBeatId ;
     private final NatedAddress selfAddress;
     private final Random rand;
+    private final TrafficStats traffic;
 
     public NatTraversalComp(NatTraversalInit init) {
         this.selfAddress = init.selfAddress;
         log.info("{} {} initiating...", new Object[]{selfAddress.getId(), (selfAddress.isOpen() ? "OPEN" : "NATED")});
 
         this.rand = new Random(init.seed);
+        this.traffic = init.traffic;
         subscribe(handleStart, control);
         subscribe(handleStop, control);
         subscribe(handleIncomingMsg, network);
@@ -124,6 +126,7 @@ public class NatTraversalComp extends ComponentDefinition {
                 if (sourceHeader.getActualDestination().getParents().contains(selfAddress)) {
                     //log.info("{} relaying message for:{}", new Object[]{selfAddress.getId(), sourceHeader.getSource()});
                     RelayHeader<NatedAddress> relayHeader = sourceHeader.getRelayHeader();
+                    traffic.relayed(msg);
                     trigger(msg.copyMessage(relayHeader), network);
                     return;
                 } else {
@@ -137,10 +140,16 @@ public class NatTraversalComp extends ComponentDefinition {
                 RelayHeader<NatedAddress> relayHeader = (RelayHeader<NatedAddress>) header;
                 //log.info("{} delivering relayed message:{} from:{}", new Object[]{selfAddress.getId(), msg, relayHeader.getActualSource()});
                 Header<NatedAddress> originalHeader = relayHeader.getActualHeader();
+                traffic.received(msg);
                 trigger(msg.copyMessage(originalHeader), local);
                 return;
             } else {
                 //log.info("{} delivering direct message:{} from:{}", new Object[]{selfAddress.getId(), msg, header.getSource()});
+                //the croupier gets its shuffles from the network too and counts them itself
+                TrafficStats.Kind kind = TrafficStats.kindOf(msg);
+                if (kind != TrafficStats.Kind.SHUFFLE_REQUEST && kind != TrafficStats.Kind.SHUFFLE_RESPONSE) {
+                    traffic.received(msg);
+                }
                 trigger(msg, local);
                 return;
             }
@@ -156,6 +165,7 @@ public class NatTraversalComp extends ComponentDefinition {
             Header<NatedAddress> header = msg.getHeader();
             if(header.getDestination().isOpen()) {
                 //log.info("{} sending direct message:{} to:{}", new Object[]{selfAddress.getId(), msg, header.getDestination()});
+                traffic.sent(msg);
                 trigger(msg, network);
                 return;
             } else {
@@ -165,7 +175,9 @@ public class NatTraversalComp extends ComponentDefinition {
                 NatedAddress parent = randomNode(header.getDestination().getParents());
                 SourceHeader<NatedAddress> sourceHeader = new SourceHeader(header, parent);
                //log.info("{} sending message:{} to relay:{}", new Object[]{selfAddress.getId(), msg, parent});
-                trigger(msg.copyMessage(sourceHeader), network);
+                NetMsg relayed = msg.copyMessage(sourceHeader);
+                traffic.sent(relayed);
+                trigger(relayed, network);
                 return;
             }
         }
@@ -177,7 +189,9 @@ public class NatTraversalComp extends ComponentDefinition {
         @Override
         public void handle(HeartBeatCycle event) {
         	for (NatedAddress parent : selfAddress.getParents()) {
-        			trigger(new HeartBeatRequest(selfAddress, parent), network);
+        			HeartBeatRequest request = new HeartBeatRequest(selfAddress, parent);
+        			traffic.sent(request);
+        			trigger(request, network);
 	               launchTimeOutHeartBeat(parent);
 	                break;
         	}
@@ -189,7 +203,9 @@ public class NatTraversalComp extends ComponentDefinition {
 
         @Override
         public void handle(HeartBeatRequest event) {
-        	trigger(new HeartBeatResponse(selfAddress, event.getSource()), network);
+        	HeartBeatResponse response = new HeartBeatResponse(selfAddress, event.getSource());
+        	traffic.sent(response);
+        	trigger(response, network);
         }
 
 	};
@@ -198,7 +214,9 @@ public class NatTraversalComp extends ComponentDefinition {
 
 	        @Override
 	        public void handle(HeartBeatResponse event) {
-	        	trigger(new HeartBeatResponse(selfAddress, event.getSource()), network);
+	        	HeartBeatResponse response = new HeartBeatResponse(selfAddress, event.getSource());
+	        	traffic.sent(response);
+	        	trigger(response, network);
 	        }
 
 		};
@@ -258,10 +276,16 @@ public class NatTraversalComp extends ComponentDefinition {
 
         public final NatedAddress selfAddress;
         public final long seed;
+        public final TrafficStats traffic;
 
         public NatTraversalInit(NatedAddress selfAddress, long seed) {
+            this(selfAddress, seed, new TrafficStats());
+        }
+
+        public NatTraversalInit(NatedAddress selfAddress, long seed, TrafficStats traffic) {
             this.selfAddress = selfAddress;
             this.seed = seed;
+            this.traffic = traffic;
         }
     }
 }
\ No newline at end of file
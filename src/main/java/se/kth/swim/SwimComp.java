@@ -18,33 +18,32 @@
  */
 package se.kth.swim;
 
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.sql.Time;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.UUID;
 
-import javax.imageio.stream.IIOByteBuffer;
-
-import javassist.bytecode.Descriptor.Iterator;
-import javassist.bytecode.analysis.ControlFlow.Node;
-
-import org.javatuples.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.CaseFormat;
-
+import se.kth.swim.internal.LocalHealth;
+import se.kth.swim.internal.Member;
+import se.kth.swim.internal.MemberSampler;
+import se.kth.swim.internal.MemberState;
+import se.kth.swim.internal.MembershipTable;
+import se.kth.swim.internal.MergeKernel;
+import se.kth.swim.internal.PiggybackAssembler;
+import se.kth.swim.internal.ProbeTracker;
+import se.kth.swim.internal.RelayTable;
+import se.kth.swim.internal.Suspicion;
+import se.kth.swim.internal.SuspicionTimeout;
 import se.kth.swim.msg.Status;
+import se.kth.swim.msg.net.NetNack;
 import se.kth.swim.msg.net.NetPing;
 import se.kth.swim.msg.net.NetPingReq;
-import se.kth.swim.msg.net.NetPong;
 import se.kth.swim.msg.net.NetStatus;
+import se.kth.swim.msg.net.NetStatusAck;
 import se.kth.swim.msg.net.PiggyPong;
 import se.kth.swim.msg.net.PiggyPongReq;
 import se.sics.kompics.ComponentDefinition;
@@ -53,14 +52,12 @@ import se.sics.kompics.Init;
 import se.sics.kompics.Positive;
 import se.sics.kompics.Start;
 import se.sics.kompics.Stop;
-import se.sics.kompics.network.Address;
 import se.sics.kompics.network.Network;
 import se.sics.kompics.timer.CancelTimeout;
 import se.sics.kompics.timer.SchedulePeriodicTimeout;
 import se.sics.kompics.timer.ScheduleTimeout;
 import se.sics.kompics.timer.Timeout;
 import se.sics.kompics.timer.Timer;
-import se.sics.p2ptoolbox.util.network.NatType;
 import se.sics.p2ptoolbox.util.network.NatedAddress;
 
 /**
@@ -68,17 +65,16 @@ import se.sics.p2ptoolbox.util.network.NatedAddress;
  */
 public class SwimComp extends ComponentDefinition {
 
-	private static int MAX_LIST = 150;
-	private static int TIME_OUT = 10;
-	private static int PING_MAX = 10;
 	private static int DELAY_PONG = 1000;
 	private static int DELAY_INDIRECT_PING = 1000;
-	private static int DELAY_SUSPECTED = 2000;
 	private static int K_INDIRECT_PING = 10;
-	private enum enumStatus {ALIVE, SUSPECT, DEAD;};
-	
-	
-	private int current_limit = 0;
+	//relays nack after this fraction of the indirect ping delay
+	private static double NACK_RATIO = 0.8;
+	private static int RELAY_CAPACITY = 256;
+	private static int PROBE_CAPACITY = 64;
+	//one status report out of this many is a full snapshot, for resync
+	private static int STATUS_FULL_EVERY = 10;
+
     private static final Logger log = LoggerFactory.getLogger(SwimComp.class);
     private Positive<Network> network = requires(Network.class);
     private Positive<Timer> timer = requires(Timer.class);
@@ -86,32 +82,43 @@ public class SwimComp extends ComponentDefinition {
     private final NatedAddress selfAddress;
     private final Set<NatedAddress> bootstrapNodes;
     private final NatedAddress aggregatorAddress;
-
-    private  Set<NatedAddress> aliveNodes ; //start with the bootstraps nodes
-    private  Set<NatedAddress> suspectedNodes= new HashSet<NatedAddress>();
-    private  Set<NatedAddress> deadNodes= new HashSet<NatedAddress>();
-    
-    private HashMap<NatedAddress, Integer> incarnationMap = new HashMap<NatedAddress, Integer>();
-    
-    private SortedSet<NodeAndCounter> recentAliveNodes = new TreeSet<NodeAndCounter>();
-    private SortedSet<NodeAndCounter> recentSuspectedNodes =  new TreeSet<NodeAndCounter>();
-    private SortedSet<NodeAndCounter> recentDeadNodes =  new TreeSet<NodeAndCounter>();
-    
-
-    private HashMap<NatedAddress,NatedAddress> indirectToPingNodes = new HashMap<NatedAddress,NatedAddress>();
-    private HashMap<UUID,NatedAddress> indirectPingedNodes = new HashMap<UUID,NatedAddress>();
-    private HashMap<UUID,NatedAddress> pingedNodes = new HashMap<UUID,NatedAddress>();
-    private HashMap<UUID,NatedAddress> timerToSuspectedNodes = new HashMap<UUID,NatedAddress>();
+    private final SwimConfig config;
+    //counted by the nat traversal layer below us
+    private final TrafficStats traffic;
+
+    //start with the bootstraps nodes
+    private final MembershipTable members;
+    private final PiggybackAssembler piggyback;
+    private final MemberSampler sampler;
+    private final Member[] helpers = new Member[K_INDIRECT_PING];
+    private final LocalHealth health;
+    private int incarnation = 0;
+    //alive update about ourselves, replaced when the incarnation changes
+    private NodeAndCounter self;
+
+
+    //indirect pings we relay, by the sequence number of our ping to the target
+    private final RelayTable relays;
+    //odd, the probe tracker numbers our own probes with even numbers
+    private int nextRelaySeq = 1;
+    //our own probes still waiting for an ack, by sequence number
+    private final ProbeTracker outstanding = new ProbeTracker(PROBE_CAPACITY);
+    //ongoing suspicions, each with its single timer
+    private final HashMap<Integer, Suspicion> suspicions = new HashMap<Integer, Suspicion>();
 
     
     private UUID pingTimeoutId;
     private UUID statusTimeoutId;
+    //probe periods elapsed, our clock for anything measured in protocol time
+    private long probeRound = 0;
 
     private int receivedPings = 0;
-    private int receivedPongs = 0;
+    //membership version of the last status report the aggregator acknowledged
+    private int ackedStatus = -1;
+    private int statusSinceFull = 0;
     
 
-    private Random rand = new Random();
+    private final Random rand;
 
 
     public SwimComp(SwimInit init) {
@@ -119,24 +126,36 @@ public class SwimComp extends ComponentDefinition {
         //log.info("{} initiating...", selfAddress);
         this.bootstrapNodes = init.bootstrapNodes;
         this.aggregatorAddress = init.aggregatorAddress;
-        this.aliveNodes = new HashSet<NatedAddress>(this.bootstrapNodes);
-        for(NatedAddress na : aliveNodes){
-        	System.out.println(na);
-        	incarnationMap.put(na,0);
+        this.config = init.config;
+        this.traffic = init.traffic;
+        this.rand = new Random(init.seed);
+        //tombstones age in probe rounds
+        long tombstoneRounds = (config.tombstoneTtl + config.probePeriod - 1) / config.probePeriod;
+        this.members = new MembershipTable(config.lambda, rand, tombstoneRounds);
+        this.piggyback = new PiggybackAssembler(config.maxMessageSize);
+        this.self = new NodeAndCounter(selfAddress, incarnation);
+        this.sampler = new MemberSampler(rand);
+        this.health = new LocalHealth(config.maxHealth);
+        this.relays = new RelayTable(RELAY_CAPACITY);
+        for(NatedAddress na : bootstrapNodes){
+        	members.update(na, MemberState.ALIVE, 0);
         }
 
-    	incarnationMap.put(selfAddress, 0);
-        
         subscribe(handleStart, control);
         subscribe(handleStop, control);
         subscribe(handlePing, network);
         subscribe(handlePong, network);
+        subscribe(handlePongReq, network);
         subscribe(handleIndirectPing, network);
         subscribe(handlePingTimeout, timer);
         subscribe(handlePongTimeout, timer);
         subscribe(handleSuspectedTimeout, timer);
         subscribe(handleStatusTimeout, timer);
+        subscribe(handleStatusAck, network);
         subscribe(handleIndirectPongTimeout, timer);
+        subscribe(handleNack, network);
+        subscribe(handleNackTimeout, timer);
+        subscribe(handleRelayTimeout, timer);
     }
 
     private Handler<Start> handleStart = new Handler<Start>() {
@@ -175,28 +194,15 @@ public class SwimComp extends ComponentDefinition {
            
             //log.info("{} received ping from:{}", new Object[]{selfAddress.getId(), nodeSender});
         	receivedPings++;
-        	if ((!aliveNodes.contains(nodeSender) && !deadNodes.contains(nodeSender)) || (event.getIncarnNbr() > incarnationMap.get(selfAddress))){
-        		aliveNodes.add(nodeSender);
-                //update counter to 0 for sender
-                recentAliveNodes.remove(new NodeAndCounter(nodeSender, 0));
-                recentAliveNodes.add(new NodeAndCounter(nodeSender, 0));
-                incarnationMap.put(nodeSender, event.getIncarnNbr());
-        	}
+        	//a ping is an alive update from the sender itself
+        	merge(nodeSender, nodeSender, event.getIncarnNbr(), MemberState.ALIVE);
         	
             
-            //Get a number of updates to send
-            java.util.Iterator<NodeAndCounter> it = recentAliveNodes.iterator();
-            HashSet<NodeAndCounter> setAlive = new HashSet<NodeAndCounter>(constructSet(it, recentAliveNodes));
-            setAlive.add(new NodeAndCounter(selfAddress, incarnationMap.get(selfAddress)));
-            
-            it = recentSuspectedNodes.iterator();
-            HashSet<NodeAndCounter> setSuspect = new HashSet<NodeAndCounter>(constructSet(it,recentSuspectedNodes));
-                        
-            it = recentDeadNodes.iterator();
-            HashSet<NodeAndCounter> setDead = new HashSet<NodeAndCounter>(constructSet(it,recentDeadNodes));
+            //Get as many updates as fit in one datagram, shared with the other pongs of this round
+            PiggybackAssembler.Snapshot updates = piggyback.assemble(members, selfAddress, event.getSource(), self);
             
             //log.info(" {}: sending pong to {} ",selfAddress,  event.getSource());
-         	trigger(new PiggyPong(selfAddress, event.getSource(), setAlive, setSuspect, setDead), network);
+         	trigger(new PiggyPong(selfAddress, event.getSource(), updates.alive, updates.suspect, updates.dead, event.getSource(), event.getSeqNbr()), network);
             
         }
 
@@ -205,9 +211,42 @@ public class SwimComp extends ComponentDefinition {
     private Handler<NetPingReq> handleIndirectPing = new Handler<NetPingReq>(){
     	@Override 
     	public void handle(NetPingReq event){
-    		indirectToPingNodes.put(event.getNodeToPing(), event.getSource());
+    		int seq = nextRelaySeq;
+    		nextRelaySeq += 2;
+    		relays.put(seq, event.getSource(), event.getNodeToPing(), event.getSeqNbr());
     		 //log.info("{} sending ping for ind ping to partner:{}", new Object[]{selfAddress.getId(), event.getNodeToPing()});
-             trigger(new NetPing(selfAddress, event.getNodeToPing(), incarnationMap.get(selfAddress)), network);
+             trigger(new NetPing(selfAddress, event.getNodeToPing(), incarnation, seq), network);
+             launchTimeOutNack(seq);
+    	}
+    };
+    
+    private Handler<NetNack> handleNack = new Handler<NetNack>(){
+    	@Override 
+    	public void handle(NetNack event){
+    		ProbeTracker.Probe probe = outstanding.get(event.getSeqNbr(), event.getNodeToPing());
+    		if (probe != null) {
+    			probe.nacked();
+    		}
+    	}
+    };
+    
+    private Handler<NackTimeout> handleNackTimeout = new Handler<NackTimeout>(){
+    	@Override 
+    	public void handle(NackTimeout event){
+    		//still there if the target did not answer
+    		RelayTable.Entry relayed = relays.get(event.seq);
+    		if (relayed != null) {
+    			trigger(new NetNack(selfAddress, relayed.requester, relayed.target, incarnation, relayed.requesterSeq), network);
+    			//a late pong is still forwarded until the requester gave up
+    			launchTimeOutRelay(event.seq);
+    		}
+    	}
+    };
+    
+    private Handler<RelayTimeout> handleRelayTimeout = new Handler<RelayTimeout>(){
+    	@Override 
+    	public void handle(RelayTimeout event){
+    		relays.remove(event.seq);
     	}
     };
     
@@ -217,25 +256,20 @@ public class SwimComp extends ComponentDefinition {
         @Override
         public void handle(PiggyPong event) {
         	//if received answer to relay
-        	if(indirectToPingNodes.keySet().contains(event.getSource())){
+        	RelayTable.Entry relayed = relays.remove(event.getSeqNbr(), event.getSource());
+        	if(relayed != null){
         		//log.info("{} received pong for ind pong from:{}", new Object[]{selfAddress.getId(), event.getHeader().getSource()});
-            	trigger(new PiggyPongReq(selfAddress, indirectToPingNodes.get(event.getSource()), event.getAliveNodes(), event.getSuspNodes(), event.getDeadNodes(),event.getSource()), network);
-            	indirectToPingNodes.remove(event.getSource());
-            	stopTimer(indirectPingedNodes, event.getSource().getId());
-            	stopTimer(pingedNodes, event.getSource().getId());
+            	//the updates were sized for a pong to us, not for the forwarded message
+            	PiggybackAssembler.Snapshot forwarded = piggyback.forward(selfAddress, relayed.requester, event.getSource(),
+            			event.getAliveNodes(), event.getSuspNodes(), event.getDeadNodes());
+            	trigger(new PiggyPongReq(selfAddress, relayed.requester, forwarded.alive, forwarded.suspect, forwarded.dead, event.getSource(), relayed.requesterSeq), network);
             	return;
         	}
         	else{
         		//log.info("{} received pong from:{}", new Object[]{selfAddress.getId(), event.getHeader().getSource()});
-                receivedPongs++;
-                UUID uuidToRemove;
-                //if receives a  pong, remove node from pingedList
-                
-                stopTimer(pingedNodes, event.getSource().getId());
-                stopTimer(indirectPingedNodes, event.getSource().getId());
-                mergeUpdateLists(event.getAliveNodes(), event.getSuspNodes(), event.getDeadNodes());
-            	//suspectedNodes.remove(event.getSource());
-            //	recentSuspectedNodes.remove(new NodeAndCounter(event.getHeader().getSource(),0));	
+                //only the ack of the probe with this sequence number completes it
+                ack(outstanding.get(event.getSeqNbr(), event.getSource()));
+                mergeUpdateLists(event.getSource(), event.getAliveNodes(), event.getSuspNodes(), event.getDeadNodes());
         	}
             
         }
@@ -247,16 +281,14 @@ public class SwimComp extends ComponentDefinition {
         @Override
         public void handle(PiggyPongReq event) {
     		//log.info("{} received pongReq from:{}", new Object[]{selfAddress.getId(), event.getHeader().getSource()});
-            receivedPongs++;
-            UUID uuidToRemove;
-            //if receives a  pong, remove node from pingedList
-            stopTimer(indirectPingedNodes, event.getContent().nodeRelayed.getId());
-            stopTimer(indirectPingedNodes, event.getSource().getId());
-            stopTimer(pingedNodes, event.getContent().nodeRelayed.getId());
-            stopTimer(pingedNodes, event.getSource().getId());
-            mergeUpdateLists(event.getAliveNodes(), event.getSuspNodes(), event.getDeadNodes());
-        	suspectedNodes.remove(event.getSource());
-        	recentSuspectedNodes.remove(new NodeAndCounter(event.getHeader().getSource(),0));	
+            ack(outstanding.get(event.getSeqNbr(), event.getContent().nodeRelayed));
+            //the updates come from the relayed node
+            mergeUpdateLists(event.getContent().nodeRelayed, event.getAliveNodes(), event.getSuspNodes(), event.getDeadNodes());
+            Member relay = members.get(event.getSource());
+            if (relay != null && relay.getState() == MemberState.SUSPECT){
+            	refute(relay.getId());
+            	members.update(relay.getNode(), MemberState.ALIVE, relay.getIncarnation());
+            }
         
         }
 
@@ -266,18 +298,19 @@ public class SwimComp extends ComponentDefinition {
 
         @Override
         public void handle(PingTimeout event) {
-        	int max = (aliveNodes.size()-1) >0 ? aliveNodes.size()-1 : 0;
-        	int indexRandom = randInt(0,max);
-        	int i = 0;
-            for (NatedAddress partnerAddress : aliveNodes) {
-            	if (i == indexRandom) {
-	                //log.info("{} sending ping to partner:{}", new Object[]{selfAddress.getId(), partnerAddress});
-	                trigger(new NetPing(selfAddress, partnerAddress, incarnationMap.get(selfAddress)), network);
-	                launchTimeOutPing(partnerAddress);
-	                break;
-            	}
-            	i++;
-            }
+        	probeRound++;
+        	piggyback.nextRound();
+        	members.reapTombstones(probeRound);
+        	//shuffled round-robin, every live node is probed once per pass
+        	Member partner = members.nextProbe();
+        	if (partner == null) {
+        		return;
+        	}
+        	NatedAddress partnerAddress = partner.getNode();
+            //log.info("{} sending ping to partner:{}", new Object[]{selfAddress.getId(), partnerAddress});
+            ProbeTracker.Probe probe = outstanding.start(partnerAddress);
+            trigger(new NetPing(selfAddress, partnerAddress, incarnation, probe.getSeq()), network);
+            launchTimeOutPing(probe);
         }
 
     };
@@ -286,105 +319,159 @@ public class SwimComp extends ComponentDefinition {
 
         @Override
         public void handle(PongTimeout event) {
-        	Set<NatedAddress> tempSet = new HashSet<NatedAddress>(aliveNodes);
-        	NatedAddress nodeReceived = pingedNodes.get(event.getTimeoutId());
-        	tempSet.remove(nodeReceived);
+        	ProbeTracker.Probe probe = outstanding.get(event.seq);
+        	if (probe == null || probe.isIndirect()) {
+        		//pong arrived while the timeout was in flight
+        		return;
+        	}
+        	NatedAddress nodeReceived = probe.getTarget();
+        	health.probeFailed();
             log.info("{} pong timeout, sending indirect  ping for :{}", new Object[]{selfAddress.getId(), nodeReceived.getId()});
-            for(int j = 0; j<K_INDIRECT_PING && j<tempSet.size();j++){
-            	int indexRandom = randInt(0,tempSet.size()-1);
-            	int i = 0;
-            	//just to fill it, zwill be changed after in for each
-            	NatedAddress itemToRemove= nodeReceived;
-                for (NatedAddress partnerAddress : tempSet) {
-                	if (i == indexRandom) {
-                		itemToRemove = partnerAddress;
-                		log.info("{} sending indirect ping to partner:{}", new Object[]{selfAddress.getId(), partnerAddress});
-    	                trigger(new NetPingReq(selfAddress, partnerAddress, nodeReceived, incarnationMap.get(selfAddress)), network);
-    	                break;
-                	}
-                	i++;
-                }
-                tempSet.remove(itemToRemove);
-                
+            int nrHelpers = sampler.sample(members.probes(), K_INDIRECT_PING, members.get(nodeReceived), helpers);
+            for (int i = 0; i < nrHelpers; i++) {
+            	NatedAddress partnerAddress = helpers[i].getNode();
+            	helpers[i] = null;
+            	log.info("{} sending indirect ping to partner:{}", new Object[]{selfAddress.getId(), partnerAddress});
+            	trigger(new NetPingReq(selfAddress, partnerAddress, nodeReceived, incarnation, probe.getSeq()), network);
             }
-            launchTimeOutIndirectPing(nodeReceived);
+            probe.goIndirect(nrHelpers);
+            launchTimeOutIndirectPing(probe);
         }
-
-        /*	NatedAddress nodeReceived = pingedNodes.get(event.getTimeoutId());
-            recentSuspectedNodes.add(new NodeAndCounter(nodeReceived, 0));
-            suspectedNodes.add(nodeReceived);
-          //  //log.info("{} suspected node:{}", new Object[]{selfAddress.getId(), nodeReceived.getId()});
-            //pingedNodes.remove(event.getTimeoutId());
-            pingedNodes.remove(event.getTimeoutId());
-            //Nabil : Juste après avoir ajouté le noeud aux suspects, on lance un timeout (sur selfAddress??)
-            launchTimeOutSuspect(nodeReceived);
-        }*/
     };
     private Handler<IndirectPongTimeout> handleIndirectPongTimeout = new Handler<IndirectPongTimeout>() {
 
         @Override
         public void handle(IndirectPongTimeout event) {
-        	NatedAddress nodeReceived = indirectPingedNodes.get(event.getTimeoutId());
-            recentSuspectedNodes.add(new NodeAndCounter(nodeReceived, 0));
-            suspectedNodes.add(nodeReceived);
-            log.info("{} suspected node:{}", new Object[]{selfAddress.getId(), nodeReceived.getId()});
-            //pingedNodes.remove(event.getTimeoutId());
-            indirectPingedNodes.remove(event.getTimeoutId());
-            //Nabil : Juste après avoir ajouté le noeud aux suspects, on lance un timeout (sur selfAddress??)
-            launchTimeOutSuspect(nodeReceived);
+        	ProbeTracker.Probe probe = outstanding.get(event.seq);
+        	if (probe == null || !probe.isIndirect()) {
+        		return;
+        	}
+        	NatedAddress nodeReceived = probe.getTarget();
+        	if (probe.getPendingNacks() > 0) {
+        		//live relays should have nacked, we are the slow one
+        		health.nackMissed();
+        	}
+        	outstanding.finish(probe);
+        	Member member = members.get(nodeReceived);
+        	if (member == null || member.getState() == MemberState.DEAD) {
+        		return;
+        	}
+        	if (member.getState() == MemberState.ALIVE) {
+        		members.update(nodeReceived, MemberState.SUSPECT, member.getIncarnation());
+        		log.info("{} suspected node:{}", new Object[]{selfAddress.getId(), nodeReceived.getId()});
+        	}
+        	//our own failed probe confirms a suspicion others started
+            suspect(member, selfAddress);
         }
 
     };
-    private void launchTimeOutSuspect(NatedAddress node){
-    	ScheduleTimeout spt = new ScheduleTimeout(DELAY_SUSPECTED);
-        SuspectedTimeout sc = new SuspectedTimeout(spt);
+    /**
+     * Starts the suspicion of a suspected member, or counts from as one more
+     * confirmation of the ongoing one. The suspicion timer is only
+     * rescheduled when the deadline moves.
+     */
+    private void suspect(Member member, NatedAddress from){
+    	Suspicion suspicion = suspicions.get(member.getId());
+    	if (suspicion == null || suspicion.getIncarnation() != member.getIncarnation()) {
+    		refute(member.getId());
+    		suspicion = new Suspicion(member.getNode(), member.getIncarnation(), from.getId(),
+    				suspicionTimeout(), config.suspicionConfirmations, protocolTime());
+    		suspicions.put(member.getId(), suspicion);
+    	} else if (suspicion.confirm(from.getId())) {
+    		cancelPingTimeout(suspicion.getTimeoutId());
+    	} else {
+    		return;
+    	}
+    	launchTimeOutSuspect(suspicion);
+    }
+    
+    /**
+     * drops the suspicion of a node that proved to be alive or is already dead
+     */
+    private void refute(int nodeId){
+    	Suspicion suspicion = suspicions.remove(nodeId);
+    	if (suspicion != null) {
+    		cancelPingTimeout(suspicion.getTimeoutId());
+    	}
+    }
+    
+    private void launchTimeOutSuspect(Suspicion suspicion){
+    	ScheduleTimeout spt = new ScheduleTimeout(suspicion.remaining(protocolTime()));
+        SuspectedTimeout sc = new SuspectedTimeout(spt, suspicion);
         spt.setTimeoutEvent(sc);
-        timerToSuspectedNodes.put(sc.getTimeoutId(), node) ;
+        suspicion.setTimeoutId(sc.getTimeoutId());
         trigger(spt, timer);
     }
-    private void launchTimeOutPing(NatedAddress node){
-    	 ScheduleTimeout spt = new ScheduleTimeout(DELAY_PONG);
-         PongTimeout sc = new PongTimeout(spt);
+    /**
+     * ms of protocol time, counted in whole probe periods. A suspicion may
+     * thus run up to one period past its shrunk timeout, never less.
+     */
+    private long protocolTime() {
+    	return probeRound * config.probePeriod;
+    }
+    private SuspicionTimeout suspicionTimeout() {
+    	return SuspicionTimeout.forGroup(members.liveCount() + 1, config.probePeriod,
+    			config.suspicionMin, config.suspicionMax, config.suspicionConfirmations);
+    }
+
+    private void launchTimeOutPing(ProbeTracker.Probe probe){
+    	 ScheduleTimeout spt = new ScheduleTimeout(health.scale(DELAY_PONG));
+         PongTimeout sc = new PongTimeout(spt, probe.getSeq());
          spt.setTimeoutEvent(sc);
-         pingedNodes.put(sc.getTimeoutId(), node) ;
+         probe.setTimeoutId(sc.getTimeoutId());
          trigger(spt, timer);
     }
-    private void launchTimeOutIndirectPing(NatedAddress node){
-   	 	ScheduleTimeout spt = new ScheduleTimeout(DELAY_INDIRECT_PING);
-   	 	IndirectPongTimeout sc = new IndirectPongTimeout(spt);
+    private void launchTimeOutNack(int seq){
+    	ScheduleTimeout spt = new ScheduleTimeout((long) (DELAY_INDIRECT_PING * NACK_RATIO));
+    	NackTimeout sc = new NackTimeout(spt, seq);
+    	spt.setTimeoutEvent(sc);
+    	trigger(spt, timer);
+    }
+    private void launchTimeOutRelay(int seq){
+    	//requesters give up after at most their fully scaled indirect delay
+    	long nackDelay = (long) (DELAY_INDIRECT_PING * NACK_RATIO);
+    	ScheduleTimeout spt = new ScheduleTimeout((long) DELAY_INDIRECT_PING * (config.maxHealth + 1) - nackDelay);
+    	RelayTimeout sc = new RelayTimeout(spt, seq);
+    	spt.setTimeoutEvent(sc);
+    	trigger(spt, timer);
+    }
+    private void launchTimeOutIndirectPing(ProbeTracker.Probe probe){
+   	 	ScheduleTimeout spt = new ScheduleTimeout(health.scale(DELAY_INDIRECT_PING));
+   	 	IndirectPongTimeout sc = new IndirectPongTimeout(spt, probe.getSeq());
         spt.setTimeoutEvent(sc);
-        indirectPingedNodes.put(sc.getTimeoutId(), node) ;
+        probe.setTimeoutId(sc.getTimeoutId());
         trigger(spt, timer);
    }
+    
+    /**
+     * completes the probe acked by a pong, probe is null if the pong matched
+     * no outstanding probe
+     */
+    private void ack(ProbeTracker.Probe probe){
+    	if (probe == null) {
+    		return;
+    	}
+    	health.probeSucceeded();
+    	cancelPingTimeout(probe.getTimeoutId());
+    	outstanding.finish(probe);
+    }
     private Handler<SuspectedTimeout> handleSuspectedTimeout = new Handler<SuspectedTimeout>() {
 
         @Override
         public void handle(SuspectedTimeout event) {
-        	NatedAddress nodeTimedOut = timerToSuspectedNodes.get(event.getTimeoutId());
+        	NatedAddress nodeTimedOut = event.suspicion.getNode();
+        	if (suspicions.get(nodeTimedOut.getId()) != event.suspicion) {
+        		return;
+        	}
+        	suspicions.remove(nodeTimedOut.getId());
         	log.info("node {} timeout {} suspect for : {}", new Object[]{selfAddress.getId(), event.getTimeoutId(), nodeTimedOut});
-        	for ( UUID uuid : indirectPingedNodes.keySet()){
-           		if (indirectPingedNodes.get(uuid).getId() == nodeTimedOut.getId()){
-           			//indirectPingedNodes.remove(uuid);
-               		cancelSuspectedTimeout(uuid);
-               		break;
-           		}
-           	}
-        	for ( UUID uuid : pingedNodes.keySet()){
-           		if (pingedNodes.get(uuid).getId() == nodeTimedOut.getId()){
-           			//pingedNodes.remove(uuid);
-               		cancelSuspectedTimeout(uuid);
-               		break;
-           		}
-           	}
-        	recentAliveNodes.remove(new NodeAndCounter(nodeTimedOut, 0));
-        	aliveNodes.remove(nodeTimedOut);
-        	recentSuspectedNodes.remove(new NodeAndCounter(nodeTimedOut, 0));
-        	suspectedNodes.remove(nodeTimedOut);
-        	
-            recentDeadNodes.add(new NodeAndCounter(nodeTimedOut, 0));
-            deadNodes.add(nodeTimedOut);
+        	Member member = members.get(nodeTimedOut);
+        	if (member == null || member.getState() != MemberState.SUSPECT) {
+        		//suspicion was refuted in the meantime
+        		return;
+        	}
+        	members.update(nodeTimedOut, MemberState.DEAD, member.getIncarnation());
             //log.info("{} dead node:{}", new Object[]{selfAddress.getId(), nodeTimedOut.getId()});
-            timerToSuspectedNodes.remove(event.getTimeoutId());
         }
 
     };
@@ -394,51 +481,58 @@ public class SwimComp extends ComponentDefinition {
         @Override
         public void handle(StatusTimeout event) {
             //log.info("{} sending status to aggregator:{}", new Object[]{selfAddress.getId(), aggregatorAddress});
-            trigger(new NetStatus(selfAddress, aggregatorAddress, new Status(receivedPings, aliveNodes, suspectedNodes, deadNodes)), network);
+            trigger(new NetStatus(selfAddress, aggregatorAddress, nextStatus()), network);
         }
 
     };
-    
-    private HashSet<NodeAndCounter> constructSet(java.util.Iterator<NodeAndCounter> it,  SortedSet<NodeAndCounter> recent ){
-    	SortedSet<NodeAndCounter> tempNodes = new TreeSet<NodeAndCounter>();
-    	HashSet<NodeAndCounter> setAlive = new HashSet<NodeAndCounter>();
-        int i= 0;
-        while(it.hasNext() && i<MAX_LIST){
-        	NodeAndCounter address = it.next();
-           	int counterAddress = address.getCounter();
-           	if ( counterAddress < PING_MAX){
-           		setAlive.add(new NodeAndCounter(address.getNode(),incarnationMap.get(address.getNode())));
-               	tempNodes.add(new NodeAndCounter(address.getNode(),counterAddress+1));
-            	i++;
-           	}
-        }
-        //We change the recent set by incrementing the counters
-        for (NodeAndCounter node : tempNodes){
-        	recent.remove(node);
-        	recent.add(node);
+
+    private Handler<NetStatusAck> handleStatusAck = new Handler<NetStatusAck>() {
+
+        @Override
+        public void handle(NetStatusAck event) {
+        	if (event.getSeq() > ackedStatus) {
+        		ackedStatus = event.getSeq();
+        		members.changes().trim(ackedStatus);
+        	}
         }
-        return setAlive;
-    }
-    
-    private void updateRecentSet(enumStatus status, NodeAndCounter node){
-    	switch(status) {
-    		case ALIVE :
-    			recentAliveNodes.remove(node);
-    			recentAliveNodes.add(node);
-    			break;
-    		case SUSPECT :
-    			recentSuspectedNodes.remove(node);
-    			recentSuspectedNodes.add(node);
-    			break;
-    		case DEAD :
-    			recentDeadNodes.remove(node);
-    			recentDeadNodes.add(node);
-    			break;
+
+    };
+
+    /**
+     * Full snapshot until the aggregator acknowledged one and then every
+     * STATUS_FULL_EVERY reports, otherwise only the changes since the last
+     * acknowledged report.
+     */
+    private Status nextStatus() {
+    	int seq = members.version();
+    	if (ackedStatus < 0 || ++statusSinceFull >= STATUS_FULL_EVERY) {
+    		statusSinceFull = 0;
+    		return new Status(receivedPings, seq, ackedStatus, true, members.getNodes(MemberState.ALIVE, MemberState.SUSPECT),
+    				members.getNodes(MemberState.SUSPECT), members.getNodes(MemberState.DEAD), new HashSet<NatedAddress>(),
+    				traffic.copy());
     	}
+    	Set<NatedAddress> alive = new HashSet<NatedAddress>();
+    	Set<NatedAddress> suspected = new HashSet<NatedAddress>();
+    	Set<NatedAddress> dead = new HashSet<NatedAddress>();
+    	Set<NatedAddress> removed = new HashSet<NatedAddress>();
+    	for (NatedAddress node : members.changes().nodes()) {
+    		MemberState state = members.getState(node);
+    		if (state == null) {
+    			removed.add(node);
+    		} else if (state == MemberState.DEAD) {
+    			dead.add(node);
+    		} else {
+    			alive.add(node);
+    			if (state == MemberState.SUSPECT) {
+    				suspected.add(node);
+    			}
+    		}
+    	}
+    	return new Status(receivedPings, seq, ackedStatus, false, alive, suspected, dead, removed, traffic.copy());
     }
-
+    
     private void schedulePeriodicPing() {
-        SchedulePeriodicTimeout spt = new SchedulePeriodicTimeout(1000, 1000);
+        SchedulePeriodicTimeout spt = new SchedulePeriodicTimeout(config.probePeriod, config.probePeriod);
         PingTimeout sc = new PingTimeout(spt);
         spt.setTimeoutEvent(sc);
         pingTimeoutId = sc.getTimeoutId();
@@ -456,11 +550,6 @@ public class SwimComp extends ComponentDefinition {
         trigger(cpt, timer);
     }
     
-    private void cancelSuspectedTimeout(UUID uuid) {
-        CancelTimeout cpt = new CancelTimeout(uuid);
-        trigger(cpt, timer);
-    }
-    
 
     private void schedulePeriodicStatus() {
         SchedulePeriodicTimeout spt = new SchedulePeriodicTimeout(2000, 2000);
@@ -477,122 +566,82 @@ public class SwimComp extends ComponentDefinition {
     }
 
     
-    private void mergeUpdateLists(HashSet<NodeAndCounter> newAlive, HashSet<NodeAndCounter> newSuspect, HashSet<NodeAndCounter> newDead){
-    	
-        java.util.Iterator<NodeAndCounter> it = newAlive.iterator();
-        while(it.hasNext()){
-        	NodeAndCounter temp = it.next();
-        	if(selfAddress != temp.getNode()){
-        		if(!aliveNodes.contains(temp.getNode()) && !deadNodes.contains(temp.getNode())){
-            		recentAliveNodes.remove(new NodeAndCounter(temp.getNode(), 0));
-                	//recentDeadNodes.remove(new NodeAndCounter(temp, 0));
-                	recentAliveNodes.add(new NodeAndCounter(temp.getNode(), 0));
-                	//Can start propagate alive message
-                	aliveNodes.add(temp.getNode());
-                	incarnationMap.put(temp.getNode(), temp.getCounter());
-            	}
-            	else if(aliveNodes.contains(temp.getNode())&& temp.getCounter() > incarnationMap.get(temp.getNode())){
-            		if (temp.getNode() != selfAddress && !deadNodes.contains(temp.getNode())){
-                		recentAliveNodes.remove(new NodeAndCounter(temp.getNode(), 0));
-                    	//recentDeadNodes.remove(new NodeAndCounter(temp, 0));
-                    	recentAliveNodes.add(new NodeAndCounter(temp.getNode(), 0));
-                    	//Can start propagate alive message
-                    	aliveNodes.add(temp.getNode());
-                	}
-                	if(recentSuspectedNodes.remove(new NodeAndCounter(temp.getNode(), 0))){
-                		stopTimer(timerToSuspectedNodes, temp.getNode().getId());
-                	}
-                	if(suspectedNodes.remove(temp.getNode())){	
-                		stopTimer(timerToSuspectedNodes, temp.getNode().getId());
-                	}
-                	incarnationMap.put(temp.getNode(), temp.getCounter());
-            	}
-            	
-        	}
-        	
+    /**
+     * @param from member the updates were received from
+     */
+    private void mergeUpdateLists(NatedAddress from, Set<NodeAndCounter> newAlive, Set<NodeAndCounter> newSuspect, Set<NodeAndCounter> newDead){
+        for (NodeAndCounter temp : newAlive){
+        	merge(from, temp.getNode(), temp.getCounter(), MemberState.ALIVE);
         }
-        
-        it = newSuspect.iterator();
-        while(it.hasNext()){
-        	NodeAndCounter temp = it.next();
-        	if(selfAddress != temp.getNode()){
-	            	
-	        	if(!aliveNodes.contains(temp.getNode()) && !deadNodes.contains(temp.getNode())){
-	        		//add it to the "fresh" list
-	            	recentSuspectedNodes.remove(new NodeAndCounter(temp.getNode(), 0));
-	            	recentSuspectedNodes.add(new NodeAndCounter(temp.getNode(), 0));
-	            	launchTimeOutSuspect(temp.getNode());
-	            	//add it to the permanent list
-	            	recentAliveNodes.remove(new NodeAndCounter(temp.getNode(), 0));
-	            	//log.info("{} receive suspicion of:{}", new Object[]{selfAddress.getId(), temp.getId()});
-	            	aliveNodes.add(temp.getNode()); // Add it here to try to ping it after
-	            	suspectedNodes.add(temp.getNode());
-	            	incarnationMap.put(temp.getNode(), temp.getCounter());
-	        	}
-	        	else if (suspectedNodes.contains(temp.getNode())&& temp.getCounter() > incarnationMap.get(temp.getNode()) || (!suspectedNodes.contains(temp.getNode()) && aliveNodes.contains(temp.getNode()) && temp.getCounter() >= incarnationMap.get(temp.getNode()))){
-	        		if (temp.getNode() != selfAddress &&!deadNodes.contains(temp.getNode())){
-	            		//add it to the "fresh" list
-	                	recentSuspectedNodes.remove(new NodeAndCounter(temp.getNode(), 0));
-	                	recentSuspectedNodes.add(new NodeAndCounter(temp.getNode(), 0));
-	                	launchTimeOutSuspect(temp.getNode());
-	                	//add it to the permanent list
-	                	recentAliveNodes.remove(new NodeAndCounter(temp.getNode(), 0));
-	                	//log.info("{} receive suspicion of:{}", new Object[]{selfAddress.getId(), temp.getId()});
-	                	aliveNodes.add(temp.getNode()); // Add it here to try to ping it after
-	                	suspectedNodes.add(temp.getNode());
-	                	incarnationMap.put(temp.getNode(), temp.getCounter());
-	            	}
-	        	}
-        	}
-        	if (temp.getNode() == selfAddress){
-        		incarnationMap.put(selfAddress, incarnationMap.get(selfAddress) + 1);
-        	}
-        	
-        	
+        for (NodeAndCounter temp : newSuspect){
+        	merge(from, temp.getNode(), temp.getCounter(), MemberState.SUSPECT);
         }
-        
-        it = newDead.iterator();
-        while(it.hasNext()){
-        	NodeAndCounter temp = it.next();
-        	recentAliveNodes.remove(new NodeAndCounter(temp.getNode(), 0));
-        	aliveNodes.remove(temp.getNode());
-        	boolean isOldSuspect = suspectedNodes.remove(temp.getNode());
-        	if(recentSuspectedNodes.remove(new NodeAndCounter(temp.getNode(), 0)) || isOldSuspect ){
-        		stopTimer(timerToSuspectedNodes, temp.getNode().getId());
-        		stopTimer(pingedNodes, temp.getNode().getId());
-        		stopTimer(indirectPingedNodes, temp.getNode().getId());
-        	}
-        	recentDeadNodes.remove(new NodeAndCounter(temp.getNode(), 0));
-        	recentDeadNodes.add(new NodeAndCounter(temp.getNode(), 0));
-        	deadNodes.add(temp.getNode());
-        	incarnationMap.put(temp.getNode(), temp.getCounter());
-        	//recentAliveNodes.remove(new NodeAndCounter(temp, 3));
+        for (NodeAndCounter temp : newDead){
+        	merge(from, temp.getNode(), temp.getCounter(), MemberState.DEAD);
         }
     }
     
-    private void stopTimer(HashMap<UUID, NatedAddress> mapTimer, int idNode){
-    	UUID uuidToRemove = new UUID(0, 0);
-    	for(UUID uuid : mapTimer.keySet()){
-        	if (mapTimer.get(uuid).getId() == idNode){
-        		uuidToRemove = uuid ;
-        		break;
-			}
-        }
-    	if (uuidToRemove.compareTo(new UUID(0, 0)) != 0){
-        	mapTimer.remove(uuidToRemove);
-    		cancelPingTimeout(uuidToRemove);
+    private void merge(NatedAddress from, NatedAddress node, int remoteIncarnation, MemberState remote){
+    	if(selfAddress.getId().equals(node.getId())){
+    		int newIncarnation = MergeKernel.mergeSelf(incarnation, remote, remoteIncarnation);
+    		if(newIncarnation != incarnation){
+    			//refute once per suspicion, however many peers gossip it
+    			incarnation = newIncarnation;
+    			self = new NodeAndCounter(selfAddress, incarnation);
+    			health.refuted();
+    		}
+    		return;
+    	}
+    	Member member = members.get(node);
+    	switch (MergeKernel.merge(member, remote, remoteIncarnation)) {
+    		case ALIVE:
+    			//refuted by the node itself
+    			refute(node.getId());
+    			members.update(node, MemberState.ALIVE, MergeKernel.incarnation(member, remoteIncarnation));
+    			break;
+    		case REJOIN:
+    			log.info("{} node:{} rejoined", new Object[]{selfAddress.getId(), node.getId()});
+    			members.update(node, MemberState.ALIVE, MergeKernel.incarnation(member, remoteIncarnation));
+    			break;
+    		case SUSPECT:
+    			suspect(members.update(node, MemberState.SUSPECT, remoteIncarnation), from);
+    			break;
+    		case CONFIRM:
+    			//someone else suspects it too, the timeout shrinks
+    			suspect(member, from);
+    			break;
+    		case DEAD:
+    			refute(node.getId());
+    			members.update(node, MemberState.DEAD, MergeKernel.incarnation(member, remoteIncarnation));
+    			break;
+    		default:
+    			break;
     	}
     }
+    
     public static class SwimInit extends Init<SwimComp> {
 
         public final NatedAddress selfAddress;
         public final Set<NatedAddress> bootstrapNodes;
         public final NatedAddress aggregatorAddress;
+        //probe order and indirect helpers are drawn from it
+        public final long seed;
+        public final SwimConfig config;
+        //traffic of the host, reported to the aggregator
+        public final TrafficStats traffic;
+
+        public SwimInit(NatedAddress selfAddress, Set<NatedAddress> bootstrapNodes, NatedAddress aggregatorAddress, long seed, SwimConfig config) {
+            this(selfAddress, bootstrapNodes, aggregatorAddress, seed, config, new TrafficStats());
+        }
 
-        public SwimInit(NatedAddress selfAddress, Set<NatedAddress> bootstrapNodes, NatedAddress aggregatorAddress) {
+        public SwimInit(NatedAddress selfAddress, Set<NatedAddress> bootstrapNodes, NatedAddress aggregatorAddress, long seed, SwimConfig config,
+                TrafficStats traffic) {
             this.selfAddress = selfAddress;
             this.bootstrapNodes = bootstrapNodes;
             this.aggregatorAddress = aggregatorAddress;
+            this.seed = seed;
+            this.config = config;
+            this.traffic = traffic;
         }
     }
 
@@ -612,30 +661,51 @@ public class SwimComp extends ComponentDefinition {
     
     private static class PongTimeout extends Timeout {
 
-        public PongTimeout(ScheduleTimeout request) {
+        public final int seq;
+
+        public PongTimeout(ScheduleTimeout request, int seq) {
             super(request);
+            this.seq = seq;
         }
     }
     
     private static class IndirectPongTimeout extends Timeout {
 
-        public IndirectPongTimeout(ScheduleTimeout request) {
+        public final int seq;
+
+        public IndirectPongTimeout(ScheduleTimeout request, int seq) {
             super(request);
+            this.seq = seq;
         }
     }
     
-    private static class SuspectedTimeout extends Timeout {
+    private static class NackTimeout extends Timeout {
 
-        public SuspectedTimeout(ScheduleTimeout request) {
+        public final int seq;
+
+        public NackTimeout(ScheduleTimeout request, int seq) {
             super(request);
+            this.seq = seq;
         }
     }
     
-    public int randInt(int min, int max) {
+    private static class RelayTimeout extends Timeout {
+
+        public final int seq;
 
+        public RelayTimeout(ScheduleTimeout request, int seq) {
+            super(request);
+            this.seq = seq;
+        }
+    }
+    
+    private static class SuspectedTimeout extends Timeout {
 
-        int randomNum = rand.nextInt((max - min) + 1) + min;
+        public final Suspicion suspicion;
 
-        return randomNum;
+        public SuspectedTimeout(ScheduleTimeout request, Suspicion suspicion) {
+            super(request);
+            this.suspicion = suspicion;
+        }
     }
 }
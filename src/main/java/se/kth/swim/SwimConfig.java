@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim;
+
+/**
+ * Tuning parameters of the SWIM failure detector.
+ */
+public class SwimConfig {
+
+    /**
+     * retransmission multiplier - each membership update is piggybacked
+     * lambda * log(n) times
+     */
+    public final int lambda;
+    /**
+     * maximum size in bytes of a SWIM message. Keep it within one UDP
+     * datagram so that messages are never fragmented.
+     */
+    public final int maxMessageSize;
+    /**
+     * period in ms between two probes
+     */
+    public final long probePeriod;
+    /**
+     * highest local health score - probe timeouts grow up to maxHealth + 1
+     * times their base value while this node looks overloaded
+     */
+    public final int maxHealth;
+    /**
+     * a suspicion lasts at least suspicionMin * log(n) probe periods and at
+     * most suspicionMax times that when nobody confirms it
+     */
+    public final int suspicionMin;
+    public final int suspicionMax;
+    /**
+     * number of independent confirmations that bring a suspicion timeout
+     * down to its minimum
+     */
+    public final int suspicionConfirmations;
+    /**
+     * ms a dead member is remembered for, rounded up to whole probe periods.
+     * It must outlast the dissemination of its death, afterwards a stale
+     * alive update could bring it back.
+     */
+    public final long tombstoneTtl;
+
+    public SwimConfig(int lambda, int maxMessageSize) {
+        this(lambda, maxMessageSize, 1000, 8, 1, 3, 3, 30000);
+    }
+
+    public SwimConfig(int lambda, int maxMessageSize, long probePeriod, int maxHealth,
+            int suspicionMin, int suspicionMax, int suspicionConfirmations, long tombstoneTtl) {
+        this.lambda = lambda;
+        this.maxMessageSize = maxMessageSize;
+        this.probePeriod = probePeriod;
+        this.maxHealth = maxHealth;
+        this.suspicionMin = suspicionMin;
+        this.suspicionMax = suspicionMax;
+        this.suspicionConfirmations = suspicionConfirmations;
+        this.tombstoneTtl = tombstoneTtl;
+    }
+}
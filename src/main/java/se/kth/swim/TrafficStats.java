@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim;
+
+import java.util.Collection;
+import se.kth.swim.croupier.internal.CroupierContainer;
+import se.kth.swim.croupier.internal.CroupierShuffle;
+import se.kth.swim.croupier.internal.CroupierShuffleNet;
+import se.kth.swim.msg.net.HeartBeatRequest;
+import se.kth.swim.msg.net.HeartBeatResponse;
+import se.kth.swim.msg.net.NetMsg;
+import se.kth.swim.msg.serializer.SwimCodec;
+import se.sics.kompics.network.Header;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.RelayHeader;
+import se.sics.p2ptoolbox.util.network.impl.SourceHeader;
+
+/**
+ * Messages and bytes sent and received by one host, per kind of message. One
+ * instance is shared by the components of a host, which may run on different
+ * threads, so updates are synchronized.
+ * <p>
+ * Bytes are the size of the message on the wire: the SWIM codec size for
+ * SWIM messages and the same compact address encoding for the others. A
+ * message going through a relay also carries the address of the relay.
+ */
+public class TrafficStats {
+
+    public static enum Kind {
+
+        PING, PING_REQ, PONG, PONG_REQ, NACK, STATUS, STATUS_ACK,
+        SHUFFLE_REQUEST, SHUFFLE_RESPONSE, HEARTBEAT,
+        //messages forwarded on behalf of a nated node
+        RELAYED,
+        OTHER
+    }
+
+    private static final int SENT = 0;
+    private static final int SENT_BYTES = 1;
+    private static final int RECEIVED = 2;
+    private static final int RECEIVED_BYTES = 3;
+
+    //4 counters per kind
+    private final long[] counters;
+
+    public TrafficStats() {
+        this.counters = new long[Kind.values().length * 4];
+    }
+
+    public TrafficStats(long[] counters) {
+        if (counters.length != Kind.values().length * 4) {
+            throw new IllegalArgumentException("expected 4 counters per kind");
+        }
+        this.counters = counters.clone();
+    }
+
+    public synchronized void sent(Kind kind, int bytes) {
+        counters[4 * kind.ordinal() + SENT]++;
+        counters[4 * kind.ordinal() + SENT_BYTES] += bytes;
+    }
+
+    public synchronized void received(Kind kind, int bytes) {
+        counters[4 * kind.ordinal() + RECEIVED]++;
+        counters[4 * kind.ordinal() + RECEIVED_BYTES] += bytes;
+    }
+
+    public void sent(NetMsg msg) {
+        sent(kindOf(msg), wireSize(msg));
+    }
+
+    public void received(NetMsg msg) {
+        received(kindOf(msg), wireSize(msg));
+    }
+
+    /**
+     * counts a message this host forwards as relay, in both directions
+     */
+    public void relayed(NetMsg msg) {
+        int bytes = wireSize(msg);
+        received(Kind.RELAYED, bytes);
+        sent(Kind.RELAYED, bytes);
+    }
+
+    /**
+     * @return a copy of the counters, consistent across kinds
+     */
+    public synchronized TrafficStats copy() {
+        return new TrafficStats(counters);
+    }
+
+    /**
+     * @return the counters, 4 per kind, in the order used by
+     * {@link #TrafficStats(long[])}
+     */
+    public synchronized long[] toArray() {
+        return counters.clone();
+    }
+
+    /**
+     * adds the counters of other to these ones
+     */
+    public synchronized void add(TrafficStats other) {
+        long[] theirs = other.toArray();
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += theirs[i];
+        }
+    }
+
+    public synchronized long getSent(Kind kind) {
+        return counters[4 * kind.ordinal() + SENT];
+    }
+
+    public synchronized long getSentBytes(Kind kind) {
+        return counters[4 * kind.ordinal() + SENT_BYTES];
+    }
+
+    public synchronized long getReceived(Kind kind) {
+        return counters[4 * kind.ordinal() + RECEIVED];
+    }
+
+    public synchronized long getReceivedBytes(Kind kind) {
+        return counters[4 * kind.ordinal() + RECEIVED_BYTES];
+    }
+
+    public synchronized long getSent() {
+        return sum(SENT);
+    }
+
+    public synchronized long getSentBytes() {
+        return sum(SENT_BYTES);
+    }
+
+    public synchronized long getReceived() {
+        return sum(RECEIVED);
+    }
+
+    public synchronized long getReceivedBytes() {
+        return sum(RECEIVED_BYTES);
+    }
+
+    private long sum(int counter) {
+        long sum = 0;
+        for (int i = counter; i < counters.length; i += 4) {
+            sum += counters[i];
+        }
+        return sum;
+    }
+
+    public static Kind kindOf(NetMsg msg) {
+        switch (SwimCodec.typeOf(msg)) {
+            case SwimCodec.PING:
+                return Kind.PING;
+            case SwimCodec.PING_REQ:
+                return Kind.PING_REQ;
+            case SwimCodec.PONG:
+                return Kind.PONG;
+            case SwimCodec.PONG_REQ:
+                return Kind.PONG_REQ;
+            case SwimCodec.NACK:
+                return Kind.NACK;
+            case SwimCodec.STATUS:
+                return Kind.STATUS;
+            case SwimCodec.STATUS_ACK:
+                return Kind.STATUS_ACK;
+        }
+        if (msg instanceof CroupierShuffleNet.Request) {
+            return Kind.SHUFFLE_REQUEST;
+        } else if (msg instanceof CroupierShuffleNet.Response) {
+            return Kind.SHUFFLE_RESPONSE;
+        } else if (msg instanceof HeartBeatRequest || msg instanceof HeartBeatResponse) {
+            return Kind.HEARTBEAT;
+        }
+        return Kind.OTHER;
+    }
+
+    /**
+     * @return encoded size of the message, including the relay address of a
+     * relayed message
+     */
+    public static int wireSize(NetMsg msg) {
+        Header<NatedAddress> header = msg.getHeader();
+        if (header instanceof SourceHeader) {
+            SourceHeader<NatedAddress> sourceHeader = (SourceHeader<NatedAddress>) header;
+            return addressSize(sourceHeader.getDestination())
+                    + wireSize(msg.copyMessage(sourceHeader.getRelayHeader().getActualHeader()));
+        } else if (header instanceof RelayHeader) {
+            RelayHeader<NatedAddress> relayHeader = (RelayHeader<NatedAddress>) header;
+            return addressSize(relayHeader.getSource())
+                    + wireSize(msg.copyMessage(relayHeader.getActualHeader()));
+        }
+        if (SwimCodec.supports(msg)) {
+            return SwimCodec.encodedSize(msg);
+        }
+        //type and addresses
+        int size = 1 + addressSize(header.getSource()) + addressSize(header.getDestination());
+        if (msg.getContent() instanceof CroupierShuffle.Basic) {
+            CroupierShuffle.Basic shuffle = (CroupierShuffle.Basic) msg.getContent();
+            //overlay, shuffle id and the two counts
+            size += 1 + 16 + 2;
+            size += containersSize(shuffle.publicNodes) + containersSize(shuffle.privateNodes);
+        }
+        return size;
+    }
+
+    private static int containersSize(Collection<CroupierContainer> containers) {
+        int size = 0;
+        for (CroupierContainer container : containers) {
+            //address and age
+            size += addressSize(container.getSource()) + 1;
+        }
+        return size;
+    }
+
+    /**
+     * size of the address with its parents
+     */
+    private static int addressSize(NatedAddress node) {
+        int size = SwimCodec.addressSize(node, 0);
+        if (!node.isOpen()) {
+            for (NatedAddress parent : node.getParents()) {
+                size += SwimCodec.parentSize(parent);
+            }
+        }
+        return size;
+    }
+}
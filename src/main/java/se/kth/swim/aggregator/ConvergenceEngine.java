@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.aggregator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import se.kth.swim.TrafficStats;
+import se.kth.swim.internal.MemberState;
+import se.kth.swim.msg.Status;
+
+/**
+ * Cluster wide accuracy of the failure detector, kept up to date from the
+ * status reports as they arrive instead of from the logs.
+ * <p>
+ * The aggregator has no ground truth of its own: a node is taken as live as
+ * long as it keeps reporting and as failed, since its last report, once it
+ * stayed silent for longer than the failure threshold. A failed node that
+ * reports again rejoined. Nodes that never reported are not accounted for.
+ * <p>
+ * Views and ground truth are bitsets of node ids so the metrics are a few
+ * word wide intersections per view. For every node the engine also counts
+ * how many observers see it live (alive or suspected) and dead, which dates
+ * the first detection and the end of the dissemination of a failure as the
+ * reports come in.
+ * <ul>
+ * <li>convergence - fraction of (observer, node) pairs where the observer
+ * agrees with the ground truth. Forgetting a failed node counts as agreeing.</li>
+ * <li>false positives - live nodes declared dead, summed over observers</li>
+ * <li>false negatives - failed nodes still seen live, summed over observers</li>
+ * <li>detection latency - from a failure to the first observer declaring it
+ * dead</li>
+ * <li>dissemination latency - from a failure to no observer seeing it live</li>
+ * </ul>
+ * Latencies are measured from the last report of the failed node so they are
+ * overestimated by up to one status period.
+ * <p>
+ * Times are simulated ms as given by the caller, never the host clock, so the
+ * failure threshold and the latencies follow the protocol however fast the
+ * simulation runs.
+ */
+public class ConvergenceEngine implements StatusView.Listener {
+
+    private final long failureThreshold;
+    private final HashMap<Integer, StatusView> views = new HashMap<Integer, StatusView>();
+    private final HashMap<Integer, Target> targets = new HashMap<Integer, Target>();
+    //ground truth
+    private final IdBitSet live = new IdBitSet();
+    private final IdBitSet failed = new IdBitSet();
+    private final LatencyHistogram detection = new LatencyHistogram();
+    private final LatencyHistogram dissemination = new LatencyHistogram();
+    private long now;
+
+    private int liveNodes;
+    private int failedNodes;
+    private double convergence;
+    private long falsePositives;
+    private long falseNegatives;
+    private long reports;
+    private long receivedPings;
+    private TrafficStats traffic = new TrafficStats();
+
+    /**
+     * @param failureThreshold ms without a report after which a node is taken
+     * as failed, a few status periods
+     */
+    public ConvergenceEngine(long failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * @return the view of the observer after the report or null if the report
+     * was a delta the view could not apply
+     */
+    public StatusView observe(int observer, Status status, long now) {
+        this.now = now;
+        reports++;
+        //a failed node reporting again rejoined
+        failed.remove(observer);
+        live.add(observer);
+        target(observer).lastReport = now;
+        StatusView view = views.get(observer);
+        if (view == null) {
+            view = new StatusView();
+            views.put(observer, view);
+        }
+        return view.apply(status, this) ? view : null;
+    }
+
+    /**
+     * Marks the nodes that stopped reporting as failed and recomputes the
+     * metrics.
+     */
+    public void tick(long now) {
+        this.now = now;
+        List<Target> silent = new ArrayList<Target>();
+        for (Target target : targets.values()) {
+            if (live.contains(target.id) && now - target.lastReport > failureThreshold) {
+                silent.add(target);
+            }
+        }
+        //the view of a failed node no longer counts
+        for (Target target : silent) {
+            StatusView view = views.get(target.id);
+            if (view != null) {
+                view.clear(this);
+            }
+        }
+        for (Target target : silent) {
+            live.remove(target.id);
+            failed.add(target.id);
+            target.detected = false;
+            target.disseminated = false;
+            if (target.seenDead > 0) {
+                detected(target, target.firstDeadAt);
+            }
+            if (target.seenLive == 0) {
+                disseminated(target, target.goneAt);
+            }
+        }
+
+        liveNodes = live.size();
+        failedNodes = failed.size();
+        long agreeing = 0;
+        falsePositives = 0;
+        falseNegatives = 0;
+        receivedPings = 0;
+        traffic = new TrafficStats();
+        for (Map.Entry<Integer, StatusView> entry : views.entrySet()) {
+            if (!live.contains(entry.getKey())) {
+                continue;
+            }
+            StatusView view = entry.getValue();
+            receivedPings += view.getReceivedPings();
+            traffic.add(view.getTraffic());
+            int seesFailedLive = view.liveCount(failed);
+            agreeing += view.liveCount(live) + failedNodes - seesFailedLive;
+            falsePositives += view.deadCount(live);
+            falseNegatives += seesFailedLive;
+        }
+        //observers do not report themselves
+        long pairs = (long) liveNodes * (liveNodes - 1) + (long) liveNodes * failedNodes;
+        convergence = pairs == 0 ? 1 : (double) agreeing / pairs;
+    }
+
+    public void changed(int node, MemberState from, MemberState to) {
+        Target target = target(node);
+        boolean wasLive = from != null && from.isLive();
+        boolean isLive = to != null && to.isLive();
+        if (wasLive != isLive) {
+            if (isLive) {
+                target.seenLive++;
+            } else if (--target.seenLive == 0) {
+                target.goneAt = now;
+                if (failed.contains(node)) {
+                    disseminated(target, now);
+                }
+            }
+        }
+        boolean wasDead = from == MemberState.DEAD;
+        boolean isDead = to == MemberState.DEAD;
+        if (wasDead != isDead) {
+            if (!isDead) {
+                target.seenDead--;
+            } else if (target.seenDead++ == 0) {
+                target.firstDeadAt = now;
+                if (failed.contains(node)) {
+                    detected(target, now);
+                }
+            }
+        }
+    }
+
+    private void detected(Target target, long at) {
+        if (!target.detected) {
+            target.detected = true;
+            detection.record(at - target.lastReport);
+        }
+    }
+
+    private void disseminated(Target target, long at) {
+        if (!target.disseminated) {
+            target.disseminated = true;
+            dissemination.record(at - target.lastReport);
+        }
+    }
+
+    private Target target(int id) {
+        Target target = targets.get(id);
+        if (target == null) {
+            target = new Target(id);
+            targets.put(id, target);
+        }
+        return target;
+    }
+
+    public int getLiveNodes() {
+        return liveNodes;
+    }
+
+    public int getFailedNodes() {
+        return failedNodes;
+    }
+
+    /**
+     * @return fraction of agreeing (observer, node) pairs as of the last tick
+     */
+    public double getConvergence() {
+        return convergence;
+    }
+
+    public long getFalsePositives() {
+        return falsePositives;
+    }
+
+    public long getFalseNegatives() {
+        return falseNegatives;
+    }
+
+    /**
+     * @return number of status reports received so far
+     */
+    public long getReports() {
+        return reports;
+    }
+
+    /**
+     * @return pings received by the live nodes as of their last report
+     */
+    public long getReceivedPings() {
+        return receivedPings;
+    }
+
+    /**
+     * @return traffic of the live nodes as of their last report
+     */
+    public TrafficStats getTraffic() {
+        return traffic;
+    }
+
+    public LatencyHistogram getDetection() {
+        return detection;
+    }
+
+    public LatencyHistogram getDissemination() {
+        return dissemination;
+    }
+
+    private static class Target {
+
+        private final int id;
+        //observers seeing the node alive or suspected
+        private int seenLive;
+        //observers seeing the node dead
+        private int seenDead;
+        private long firstDeadAt;
+        private long goneAt;
+        private long lastReport;
+        //latencies of the current failure already recorded
+        private boolean detected;
+        private boolean disseminated;
+
+        Target(int id) {
+            this.id = id;
+        }
+    }
+}
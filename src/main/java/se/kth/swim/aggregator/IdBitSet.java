@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.aggregator;
+
+import java.util.Arrays;
+
+/**
+ * Set of node ids as a plain bit array, growing with the largest id. Node ids
+ * of the simulation are small and dense, so a view of ten thousand nodes is a
+ * couple of kilobytes and comparing two views is a pass of word wide ANDs.
+ * Ids are non negative, a negative id is never in the set.
+ */
+public class IdBitSet {
+
+    private long[] words;
+
+    public IdBitSet() {
+        this(64);
+    }
+
+    public IdBitSet(int capacity) {
+        words = new long[Math.max(1, (capacity + 63) >>> 6)];
+    }
+
+    /**
+     * @return true if the id was not in the set
+     * @throws IllegalArgumentException if id is negative
+     */
+    public boolean add(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("negative node id:" + id);
+        }
+        int i = id >>> 6;
+        if (i >= words.length) {
+            long[] grown = new long[Math.max(i + 1, 2 * words.length)];
+            System.arraycopy(words, 0, grown, 0, words.length);
+            words = grown;
+        }
+        long bit = 1L << id;
+        boolean added = (words[i] & bit) == 0;
+        words[i] |= bit;
+        return added;
+    }
+
+    /**
+     * @return true if the id was in the set
+     */
+    public boolean remove(int id) {
+        int i = id >>> 6;
+        if (id < 0 || i >= words.length) {
+            return false;
+        }
+        long bit = 1L << id;
+        boolean removed = (words[i] & bit) != 0;
+        words[i] &= ~bit;
+        return removed;
+    }
+
+    public boolean contains(int id) {
+        int i = id >>> 6;
+        return id >= 0 && i < words.length && (words[i] & (1L << id)) != 0;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    public int size() {
+        int size = 0;
+        for (long word : words) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    /**
+     * @return size of the intersection of the two sets
+     */
+    public int andCount(IdBitSet other) {
+        int n = Math.min(words.length, other.words.length);
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            count += Long.bitCount(words[i] & other.words[i]);
+        }
+        return count;
+    }
+
+    /**
+     * @return the smallest id in the set not below from, -1 if there is none
+     */
+    public int next(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int i = from >>> 6;
+        if (i >= words.length) {
+            return -1;
+        }
+        long word = words[i] & (-1L << from);
+        while (word == 0) {
+            if (++i == words.length) {
+                return -1;
+            }
+            word = words[i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    int wordCount() {
+        return words.length;
+    }
+
+    long word(int i) {
+        return i < words.length ? words[i] : 0;
+    }
+}
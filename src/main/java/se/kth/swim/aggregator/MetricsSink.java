@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.aggregator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import se.kth.swim.TrafficStats;
+
+/**
+ * Appends one CSV row of metrics per aggregator cycle to a file. Rows are
+ * encoded into a direct buffer and written to the channel only once the
+ * buffer is full or every few rows, so a cycle costs no system call. Rows are
+ * counted rather than timed, a row being one cycle of simulated time. The
+ * header is written when the file is empty.
+ */
+public class MetricsSink {
+
+    public static final String HEADER = header();
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final int flushRows;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final StringBuilder row = new StringBuilder(256);
+    private int pendingRows = 0;
+
+    /**
+     * @param flushRows rows between two writes to the file, 1 to write every
+     * row
+     */
+    public MetricsSink(File file, int flushRows) {
+        this.flushRows = flushRows;
+        try {
+            this.channel = new FileOutputStream(file, true).getChannel();
+            if (channel.size() == 0) {
+                append(HEADER);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public void write(long now, ConvergenceEngine engine) {
+        row.setLength(0);
+        row.append(now).append(',')
+                .append(engine.getLiveNodes()).append(',')
+                .append(engine.getFailedNodes()).append(',')
+                .append(engine.getConvergence()).append(',')
+                .append(engine.getFalsePositives()).append(',')
+                .append(engine.getFalseNegatives()).append(',')
+                .append(engine.getReports()).append(',')
+                .append(engine.getReceivedPings());
+        latencies(engine.getDetection());
+        latencies(engine.getDissemination());
+        TrafficStats traffic = engine.getTraffic();
+        row.append(',').append(traffic.getSent())
+                .append(',').append(traffic.getSentBytes())
+                .append(',').append(traffic.getReceived())
+                .append(',').append(traffic.getReceivedBytes());
+        for (TrafficStats.Kind kind : TrafficStats.Kind.values()) {
+            row.append(',').append(traffic.getSent(kind))
+                    .append(',').append(traffic.getSentBytes(kind));
+        }
+        append(row);
+        if (++pendingRows >= flushRows) {
+            flush();
+        }
+    }
+
+    private static String header() {
+        StringBuilder header = new StringBuilder("time,live,failed,convergence,false_positives,false_negatives,"
+                + "reports,received_pings,"
+                + "detection_count,detection_mean,detection_p50,detection_p90,detection_p99,detection_max,"
+                + "dissemination_count,dissemination_mean,dissemination_p50,dissemination_p90,dissemination_p99,dissemination_max,"
+                + "sent,sent_bytes,received,received_bytes");
+        for (TrafficStats.Kind kind : TrafficStats.Kind.values()) {
+            String name = kind.name().toLowerCase();
+            header.append(',').append(name).append("_sent,").append(name).append("_sent_bytes");
+        }
+        return header.toString();
+    }
+
+    private void latencies(LatencyHistogram histogram) {
+        row.append(',').append(histogram.getCount())
+                .append(',').append(histogram.getMean())
+                .append(',').append(histogram.percentile(50))
+                .append(',').append(histogram.percentile(90))
+                .append(',').append(histogram.percentile(99))
+                .append(',').append(histogram.getMax());
+    }
+
+    private void append(CharSequence line) {
+        if (line.length() + 1 > buffer.remaining()) {
+            flush();
+        }
+        //the rows are plain ascii
+        for (int i = 0; i < line.length(); i++) {
+            buffer.put((byte) line.charAt(i));
+        }
+        buffer.put((byte) '\n');
+    }
+
+    public void flush() {
+        pendingRows = 0;
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    public void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.aggregator;
+
+import se.kth.swim.TrafficStats;
+import se.kth.swim.internal.MemberState;
+import se.kth.swim.msg.Status;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Membership of one node as rebuilt by the aggregator from its full and
+ * delta status reports, one bitset of node ids per state. Every change of the
+ * state of an entry is reported to a {@link Listener}, so that cluster wide
+ * statistics can be kept up to date incrementally.
+ */
+public class StatusView {
+
+    public interface Listener {
+
+        /**
+         * @param from previous state, null if the node was not in the view
+         * @param to new state, null if the node left the view
+         */
+        public void changed(int node, MemberState from, MemberState to);
+    }
+
+    //disjoint, a suspected node is only in suspect
+    private IdBitSet alive = new IdBitSet();
+    private IdBitSet suspect = new IdBitSet();
+    private IdBitSet dead = new IdBitSet();
+    //version of the node's membership this view reflects, -1 before the first snapshot
+    private int seq = -1;
+    private int receivedPings;
+    private TrafficStats traffic = new TrafficStats();
+
+    /**
+     * @return false if the report is a delta from a version this view does
+     * not have. The view then waits for the next full snapshot.
+     */
+    public boolean apply(Status status, Listener listener) {
+        if (status.full) {
+            IdBitSet oldAlive = alive;
+            IdBitSet oldSuspect = suspect;
+            IdBitSet oldDead = dead;
+            alive = new IdBitSet(oldAlive.wordCount() << 6);
+            suspect = new IdBitSet(oldSuspect.wordCount() << 6);
+            dead = new IdBitSet(oldDead.wordCount() << 6);
+            for (NatedAddress node : status.aliveNodes) {
+                alive.add(node.getId());
+            }
+            read(status);
+            diff(oldAlive, oldSuspect, oldDead, listener);
+            seq = status.seq;
+        } else if (seq < 0 || status.baseSeq > seq) {
+            return false;
+        } else {
+            //alive nodes include the suspected ones
+            for (NatedAddress node : status.aliveNodes) {
+                if (!status.suspectedNodes.contains(node)) {
+                    set(node.getId(), MemberState.ALIVE, listener);
+                }
+            }
+            for (NatedAddress node : status.suspectedNodes) {
+                set(node.getId(), MemberState.SUSPECT, listener);
+            }
+            for (NatedAddress node : status.deadNodes) {
+                set(node.getId(), MemberState.DEAD, listener);
+            }
+            for (NatedAddress node : status.removedNodes) {
+                set(node.getId(), null, listener);
+            }
+            seq = Math.max(seq, status.seq);
+        }
+        receivedPings = status.receivedPings;
+        traffic = status.traffic;
+        return true;
+    }
+
+    /**
+     * empties the view, reporting every entry as gone
+     */
+    public void clear(Listener listener) {
+        IdBitSet oldAlive = alive;
+        IdBitSet oldSuspect = suspect;
+        IdBitSet oldDead = dead;
+        alive = new IdBitSet();
+        suspect = new IdBitSet();
+        dead = new IdBitSet();
+        diff(oldAlive, oldSuspect, oldDead, listener);
+        seq = -1;
+    }
+
+    /**
+     * suspected and dead nodes of a full report, alive nodes are already set
+     */
+    private void read(Status status) {
+        for (NatedAddress node : status.suspectedNodes) {
+            alive.remove(node.getId());
+            suspect.add(node.getId());
+        }
+        for (NatedAddress node : status.deadNodes) {
+            alive.remove(node.getId());
+            suspect.remove(node.getId());
+            dead.add(node.getId());
+        }
+    }
+
+    /**
+     * reports the entries that differ from the given previous content, a word
+     * of ids at a time
+     */
+    private void diff(IdBitSet oldAlive, IdBitSet oldSuspect, IdBitSet oldDead, Listener listener) {
+        int words = Math.max(Math.max(alive.wordCount(), oldAlive.wordCount()),
+                Math.max(Math.max(suspect.wordCount(), oldSuspect.wordCount()),
+                        Math.max(dead.wordCount(), oldDead.wordCount())));
+        for (int i = 0; i < words; i++) {
+            long changed = (alive.word(i) ^ oldAlive.word(i)) | (suspect.word(i) ^ oldSuspect.word(i))
+                    | (dead.word(i) ^ oldDead.word(i));
+            while (changed != 0) {
+                int node = (i << 6) + Long.numberOfTrailingZeros(changed);
+                changed &= changed - 1;
+                listener.changed(node, state(node, oldAlive, oldSuspect, oldDead), getState(node));
+            }
+        }
+    }
+
+    private void set(int node, MemberState state, Listener listener) {
+        MemberState old = getState(node);
+        if (old == state) {
+            return;
+        }
+        alive.remove(node);
+        suspect.remove(node);
+        dead.remove(node);
+        if (state == MemberState.ALIVE) {
+            alive.add(node);
+        } else if (state == MemberState.SUSPECT) {
+            suspect.add(node);
+        } else if (state == MemberState.DEAD) {
+            dead.add(node);
+        }
+        listener.changed(node, old, state);
+    }
+
+    private static MemberState state(int node, IdBitSet alive, IdBitSet suspect, IdBitSet dead) {
+        if (alive.contains(node)) {
+            return MemberState.ALIVE;
+        }
+        if (suspect.contains(node)) {
+            return MemberState.SUSPECT;
+        }
+        if (dead.contains(node)) {
+            return MemberState.DEAD;
+        }
+        return null;
+    }
+
+    public MemberState getState(int node) {
+        return state(node, alive, suspect, dead);
+    }
+
+    /**
+     * @return number of the given nodes this view sees alive or suspected
+     */
+    public int liveCount(IdBitSet nodes) {
+        return alive.andCount(nodes) + suspect.andCount(nodes);
+    }
+
+    /**
+     * @return number of the given nodes this view sees dead
+     */
+    public int deadCount(IdBitSet nodes) {
+        return dead.andCount(nodes);
+    }
+
+    public int getSeq() {
+        return seq;
+    }
+
+    public int getReceivedPings() {
+        return receivedPings;
+    }
+
+    /**
+     * @return traffic of the node as of its last report
+     */
+    public TrafficStats getTraffic() {
+        return traffic;
+    }
+
+    public int size() {
+        return alive.size() + suspect.size() + dead.size();
+    }
+}
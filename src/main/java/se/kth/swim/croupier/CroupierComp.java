@@ -27,6 +27,7 @@ import java.util.Set;
 import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.kth.swim.TrafficStats;
 import se.kth.swim.croupier.internal.CroupierContainer;
 import se.kth.swim.croupier.internal.CroupierShuffle;
 import se.kth.swim.croupier.internal.CroupierShuffleNet;
@@ -71,6 +72,7 @@ public class CroupierComp extends ComponentDefinition {
     private final CroupierConfig croupierConfig;
     private final String logPrefix;
     private final int overlayId;
+    private final TrafficStats traffic;
 
     private List<NatedAddress> bootstrapNodes;
     private Object selfView;
@@ -84,6 +86,7 @@ public class CroupierComp extends ComponentDefinition {
         this.self = init.self;
         this.croupierConfig = init.croupierConfig;
         this.overlayId = init.overlayId;
+        this.traffic = init.traffic;
         this.logPrefix = "<oid:" + overlayId + ",nid:" + self.getBaseAdr().toString() + ">";
         this.bootstrapNodes = new ArrayList<NatedAddress>(init.bootstrapNodes);
 
@@ -242,8 +245,9 @@ public class CroupierComp extends ComponentDefinition {
             publicView.incrementDescriptorAges();
             privateView.incrementDescriptorAges();
 
-            Set<CroupierContainer> publicDescCopy = publicView.initiatorCopySet(croupierConfig.shuffleSize, peer);
-            Set<CroupierContainer> privateDescCopy = privateView.initiatorCopySet(croupierConfig.shuffleSize, peer);
+            UUID shuffleId = UUID.randomUUID();
+            Set<CroupierContainer> publicDescCopy = publicView.initiatorCopySet(shuffleId, croupierConfig.shuffleSize);
+            Set<CroupierContainer> privateDescCopy = privateView.initiatorCopySet(shuffleId, croupierConfig.shuffleSize);
 
             if (self.isOpen()) {
                 publicDescCopy.add(new CroupierContainer(self, selfView));
@@ -252,9 +256,10 @@ public class CroupierComp extends ComponentDefinition {
             }
 
             OverlayHeaderImpl<NatedAddress> requestHeader = new OverlayHeaderImpl(new BasicHeader(self, peer, Transport.UDP), overlayId);
-            CroupierShuffle.Request requestContent = new CroupierShuffle.Request(UUID.randomUUID(), publicDescCopy, privateDescCopy);
+            CroupierShuffle.Request requestContent = new CroupierShuffle.Request(shuffleId, publicDescCopy, privateDescCopy);
             CroupierShuffleNet.Request request = new CroupierShuffleNet.Request(requestHeader, requestContent);
             //log.trace("{} sending:{} to:{}", new Object[]{logPrefix, requestContent, peer});
+            traffic.sent(request);
             trigger(request, network);
             scheduleShuffleTimeout(peer);
         }
@@ -275,6 +280,7 @@ public class CroupierComp extends ComponentDefinition {
                 throw new RuntimeException("tried to shuffle with myself");
             }
             //log.trace("{} received:{} from:{}", new Object[]{logPrefix, request, reqSrc});
+            traffic.received(request);
             if (selfView == null) {
                 /*log.warn("{} not ready to shuffle - no self view available - {} tried to shuffle with me", logPrefix, reqSrc);*/
                 return;
@@ -286,8 +292,9 @@ public class CroupierComp extends ComponentDefinition {
             publicView.incrementDescriptorAges();
             privateView.incrementDescriptorAges();
 
-            Set<CroupierContainer> publicDescCopy = publicView.receiverCopySet(croupierConfig.shuffleSize, reqSrc);
-            Set<CroupierContainer> privateDescCopy = privateView.receiverCopySet(croupierConfig.shuffleSize, reqSrc);
+            UUID shuffleId = request.getContent().getId();
+            Set<CroupierContainer> publicDescCopy = publicView.receiverCopySet(shuffleId, croupierConfig.shuffleSize);
+            Set<CroupierContainer> privateDescCopy = privateView.receiverCopySet(shuffleId, croupierConfig.shuffleSize);
             if (self.isOpen()) {
                 publicDescCopy.add(new CroupierContainer(self, selfView));
             } else {
@@ -295,14 +302,15 @@ public class CroupierComp extends ComponentDefinition {
             }
 
             OverlayHeaderImpl<NatedAddress> responseHeader = new OverlayHeaderImpl(new BasicHeader(self, reqSrc, Transport.UDP), overlayId);
-            CroupierShuffle.Response responseContent = new CroupierShuffle.Response(request.getContent().getId(), publicDescCopy, privateDescCopy);
+            CroupierShuffle.Response responseContent = new CroupierShuffle.Response(shuffleId, publicDescCopy, privateDescCopy);
             CroupierShuffleNet.Response response = new CroupierShuffleNet.Response(responseHeader, responseContent);
 
             //log.trace("{} sending:{} to:{}", new Object[]{logPrefix, responseContent, reqSrc});
+            traffic.sent(response);
             trigger(response, network);
 
-            publicView.selectToKeep(reqSrc, request.getContent().publicNodes);
-            privateView.selectToKeep(reqSrc, request.getContent().privateNodes);
+            publicView.selectToKeep(shuffleId, reqSrc, request.getContent().publicNodes);
+            privateView.selectToKeep(shuffleId, reqSrc, request.getContent().privateNodes);
             if (!connected() && haveShufflePartners()) {
                 startShuffle();
             }
@@ -324,14 +332,15 @@ public class CroupierComp extends ComponentDefinition {
                         throw new RuntimeException("tried to shuffle with myself");
                     }
                     //log.trace("{} received:{} from:{}", new Object[]{logPrefix, response, respSrc});
+                    traffic.received(response);
 
                     if (shuffleTimeoutId == null) {
                         //log.debug("{} req:{}  already timed out", new Object[]{logPrefix, response.getContent().getId(), respSrc});
                         return;
                     }
 
-                    publicView.selectToKeep(respSrc, response.getContent().publicNodes);
-                    privateView.selectToKeep(respSrc, response.getContent().privateNodes);
+                    publicView.selectToKeep(response.getContent().getId(), respSrc, response.getContent().publicNodes);
+                    privateView.selectToKeep(response.getContent().getId(), respSrc, response.getContent().privateNodes);
                     cancelShuffleTimeout();
                 }
             };
@@ -400,13 +409,20 @@ public class CroupierComp extends ComponentDefinition {
         public final long seed;
         public final CroupierConfig croupierConfig;
         public final int overlayId;
+        public final TrafficStats traffic;
 
         public CroupierInit(NatedAddress self, List<NatedAddress> bootstrapNodes, long seed, CroupierConfig croupierConfig, int overlayId) {
+            this(self, bootstrapNodes, seed, croupierConfig, overlayId, new TrafficStats());
+        }
+
+        public CroupierInit(NatedAddress self, List<NatedAddress> bootstrapNodes, long seed, CroupierConfig croupierConfig, int overlayId,
+                TrafficStats traffic) {
             this.self = self;
             this.bootstrapNodes = bootstrapNodes;
             this.seed = seed;
             this.croupierConfig = croupierConfig;
             this.overlayId = overlayId;
+            this.traffic = traffic;
         }
     }
 
@@ -24,23 +24,41 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.UUID;
 import se.kth.swim.croupier.CroupierSelectionPolicy;
 import se.sics.p2ptoolbox.util.network.NatedAddress;
 import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
 
 /**
+ * The entries are kept in an array, each entry knowing its slot, and indexed
+ * by address. The descriptors sent in a shuffle are recorded under the shuffle
+ * id until the other side's descriptors arrive.
+ *
  * @author Alex Ormenisan <aaor@sics.se>
  */
 public class CroupierView<C extends Object> {
 
+    //records of shuffles that never completed are dropped, oldest first
+    private static final int MAX_PENDING_SHUFFLES = 16;
+
     private final int viewSize;
     private final BasicAddress selfAddress;
+    //entries in slots 0..size-1
+    private final CroupierViewEntry<C>[] entries;
+    private int size = 0;
     private final HashMap<BasicAddress, CroupierViewEntry<C>> d2e;
     private final Random rand;
+    //descriptors sent per shuffle id
+    private final LinkedHashMap<UUID, CroupierViewEntry<C>[]> sent = new LinkedHashMap<UUID, CroupierViewEntry<C>[]>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, CroupierViewEntry<C>[]> eldest) {
+            return size() > MAX_PENDING_SHUFFLES;
+        }
+    };
 
     private Comparator<CroupierViewEntry> comparatorByAge = new Comparator<CroupierViewEntry>() {
         //@Override
@@ -59,25 +77,26 @@ public class CroupierView<C extends Object> {
         super();
         this.selfAddress = selfAddress;
         this.viewSize = viewSize;
+        this.entries = newEntries(viewSize);
         this.d2e = new HashMap<BasicAddress, CroupierViewEntry<C>>();
         this.rand = rand;
     }
 
     public void incrementDescriptorAges() {
-        for (CroupierViewEntry entry : d2e.values()) {
-            entry.getDescriptor().incrementAge();
+        for (int i = 0; i < size; i++) {
+            entries[i].getDescriptor().incrementAge();
         }
     }
 
     public NatedAddress selectPeerToShuffleWith(CroupierSelectionPolicy policy,
             boolean softmax, double temperature) {
-        if (d2e.isEmpty()) {
+        if (size == 0) {
             return null;
         }
 
         CroupierViewEntry selectedEntry = null;
 
-        selectedEntry = generateRandomSample(1).get(0);
+        selectedEntry = entries[rand.nextInt(size)];
 //        if (!softmax || policy == CroupierSelectionPolicy.RANDOM) {
 //            if (policy == CroupierSelectionPolicy.TAIL) {
 //                selectedEntry = Collections.max(d2e.values(), comparatorByAge);
@@ -117,55 +136,64 @@ public class CroupierView<C extends Object> {
         return selectedEntry.getDescriptor().getSource();
     }
 
-    public Set<CroupierContainer<C>> initiatorCopySet(int count, NatedAddress destinationPeer) {
-        List<CroupierViewEntry> randomEntries = generateRandomSample(count);
-        Set<CroupierContainer<C>> descriptors = new HashSet<CroupierContainer<C>>();
-        for (CroupierViewEntry cacheEntry : randomEntries) {
-            cacheEntry.sentTo((BasicAddress)destinationPeer.getBaseAdr());
-            descriptors.add(cacheEntry.getDescriptor().getCopy());
-        }
-        return descriptors;
+    public Set<CroupierContainer<C>> initiatorCopySet(UUID shuffleId, int count) {
+        return copySet(shuffleId, count);
     }
 
-    public Set<CroupierContainer<C>> receiverCopySet(int count, NatedAddress destinationPeer) {
-        List<CroupierViewEntry> randomEntries = generateRandomSample(count);
+    public Set<CroupierContainer<C>> receiverCopySet(UUID shuffleId, int count) {
+        return copySet(shuffleId, count);
+    }
+
+    private Set<CroupierContainer<C>> copySet(UUID shuffleId, int count) {
+        CroupierViewEntry<C>[] randomEntries = generateRandomSample(count);
         Set<CroupierContainer<C>> descriptors = new HashSet<CroupierContainer<C>>();
-        for (CroupierViewEntry cacheEntry : randomEntries) {
-            cacheEntry.sentTo((BasicAddress)destinationPeer.getBaseAdr());
+        for (CroupierViewEntry<C> cacheEntry : randomEntries) {
+            cacheEntry.sent();
             descriptors.add(cacheEntry.getDescriptor().getCopy());
         }
+        sent.put(shuffleId, randomEntries);
         return descriptors;
     }
 
-    public void selectToKeep(NatedAddress from, Set<CroupierContainer<C>> descriptors) {
+    /**
+     * Merges the descriptors received in the shuffle with the given id. Once
+     * the view is full, the entries we sent in that shuffle are replaced first,
+     * then the entry of the peer itself.
+     */
+    public void selectToKeep(UUID shuffleId, NatedAddress from, Set<CroupierContainer<C>> descriptors) {
+        CroupierViewEntry<C>[] sentEntries = sent.remove(shuffleId);
         BasicAddress baseFrom = (BasicAddress)from.getBaseAdr();
         if (baseFrom.equals(selfAddress)) {
             return;
         }
 
-        LinkedList<CroupierViewEntry> entriesSentToThisPeer = new LinkedList<CroupierViewEntry>();
-        for (CroupierViewEntry cacheEntry : d2e.values()) {
-            if (cacheEntry.wasSentTo(baseFrom)) {
-                entriesSentToThisPeer.add(cacheEntry);
+        ArrayList<CroupierViewEntry<C>> entriesSentToThisPeer = new ArrayList<CroupierViewEntry<C>>();
+        if (sentEntries != null) {
+            for (CroupierViewEntry<C> cacheEntry : sentEntries) {
+                //skip the entries replaced or timed out since
+                if (cacheEntry.index != -1) {
+                    entriesSentToThisPeer.add(cacheEntry);
+                }
             }
         }
         //TODO Alex policy for removing the descriptor of the shuffle target - should it be the first i remove or last?
-        if (d2e.containsKey(baseFrom)) {
-            entriesSentToThisPeer.add(d2e.get(baseFrom));
+        CroupierViewEntry<C> fromEntry = d2e.get(baseFrom);
+        if (fromEntry != null && !entriesSentToThisPeer.contains(fromEntry)) {
+            entriesSentToThisPeer.add(fromEntry);
         }
+        int next = 0;
 
         for (CroupierContainer<C> descriptor : descriptors) {
             BasicAddress baseSrc = (BasicAddress)descriptor.getSource().getBaseAdr();
             if (selfAddress.equals(baseSrc)) {
                 continue; // do not keep descriptor of self
             }
-            if (d2e.containsKey(baseSrc)) {
+            CroupierViewEntry<C> entry = d2e.get(baseSrc);
+            if (entry != null) {
                 // we already have an entry for this peer. keep the youngest one
-
-                CroupierViewEntry entry = d2e.get(baseSrc);
                 if (entry.getDescriptor().getAge() > descriptor.getAge()) {
                     // we keep the lowest age descriptor
-                    CroupierViewEntry newCVE = new CroupierViewEntry(descriptor);
+                    CroupierViewEntry<C> newCVE = new CroupierViewEntry<C>(descriptor);
 
                     //TODO Alex what is the policy about descriptors I sent and received from src
                     int index = entriesSentToThisPeer.indexOf(entry);
@@ -176,15 +204,18 @@ public class CroupierView<C extends Object> {
                     removeEntry(baseSrc);
                     addEntry(newCVE);
                 }
-            } else if (d2e.size() < viewSize) {
+            } else if (size < viewSize) {
                 // fill an empty slot
-                addEntry(new CroupierViewEntry(descriptor));
+                addEntry(new CroupierViewEntry<C>(descriptor));
             } else {
                 // replace one slot out of those sent to this peer
-                CroupierViewEntry sentEntry = entriesSentToThisPeer.poll();
-                if (sentEntry != null) {
-                    removeEntry((BasicAddress)sentEntry.getDescriptor().getSource().getBaseAdr());
-                    addEntry(new CroupierViewEntry(descriptor));
+                while (next < entriesSentToThisPeer.size()) {
+                    CroupierViewEntry<C> sentEntry = entriesSentToThisPeer.get(next++);
+                    if (sentEntry.index != -1) {
+                        removeEntry((BasicAddress)sentEntry.getDescriptor().getSource().getBaseAdr());
+                        addEntry(new CroupierViewEntry<C>(descriptor));
+                        break;
+                    }
                 }
             }
         }
@@ -193,26 +224,26 @@ public class CroupierView<C extends Object> {
 //-------------------------------------------------------------------	
     public final Set<CroupierContainer<C>> getAllCopy() {
         Set<CroupierContainer<C>> descriptors = new HashSet<CroupierContainer<C>>();
-        for (CroupierViewEntry cacheEntry : d2e.values()) {
-            descriptors.add(cacheEntry.getDescriptor().getCopy());
+        for (int i = 0; i < size; i++) {
+            descriptors.add(entries[i].getDescriptor().getCopy());
         }
         return descriptors;
     }
 
-    private List<CroupierViewEntry> generateRandomSample(int n) {
-        List<CroupierViewEntry> randomEntries = new ArrayList<CroupierViewEntry>();
-        if (n >= d2e.size()) {
+    private CroupierViewEntry<C>[] generateRandomSample(int n) {
+        if (n >= size) {
             //return a copy of all entries
-            randomEntries.addAll(d2e.values());
-            return randomEntries;
+            CroupierViewEntry<C>[] all = newEntries(size);
+            System.arraycopy(entries, 0, all, 0, size);
+            return all;
         }
-        ArrayList<CroupierViewEntry> entries = new ArrayList<CroupierViewEntry>(d2e.values());
+        CroupierViewEntry<C>[] randomEntries = newEntries(n);
         // Don Knuth, The Art of Computer Programming, Algorithm S(3.4.2)
-        int t = 0, m = 0, N = d2e.size();
+        int t = 0, m = 0, N = size;
         while (m < n) {
             int x = rand.nextInt(N - t);
             if (x < n - m) {
-                randomEntries.add(entries.get(t));
+                randomEntries[m] = entries[t];
                 m += 1;
                 t += 1;
             } else {
@@ -222,12 +253,24 @@ public class CroupierView<C extends Object> {
         return randomEntries;
     }
 
-    private void addEntry(CroupierViewEntry entry) {
+    private void addEntry(CroupierViewEntry<C> entry) {
+        entry.index = size;
+        entries[size++] = entry;
         d2e.put((BasicAddress)entry.getDescriptor().getSource().getBaseAdr(), entry);
     }
 
     private boolean removeEntry(BasicAddress src) {
-        return d2e.remove(src) != null;
+        CroupierViewEntry<C> entry = d2e.remove(src);
+        if (entry == null) {
+            return false;
+        }
+        //move the last entry into the freed slot
+        CroupierViewEntry<C> last = entries[--size];
+        entries[entry.index] = last;
+        last.index = entry.index;
+        entries[size] = null;
+        entry.index = -1;
+        return true;
     }
 
     public void timedOut(NatedAddress src) {
@@ -235,11 +278,16 @@ public class CroupierView<C extends Object> {
     }
 
     public boolean isEmpty() {
-        return d2e.isEmpty();
+        return size == 0;
     }
 
     public int size() {
-        return d2e.size();
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <C> CroupierViewEntry<C>[] newEntries(int length) {
+        return (CroupierViewEntry<C>[]) new CroupierViewEntry[length];
     }
 
     //TODO Alex check if it matched to Abhi's soft max and replace
@@ -21,17 +21,13 @@
 package se.kth.swim.croupier.internal;
 
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Set;
-import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
 
 /**
  * The <code>RandomViewEntry</code> class represents an entry in a node's
- * randomView. It contains a node descriptor and it marks when and to what peer this
- * entry was last sent to. This information is used in the process of updating
- * the randomView during a shuffle, so that the first randomView entries removed are those
- * that were sent to the peer from whom we received the current shuffle
- * response.
+ * randomView. It contains a node descriptor and it marks when this entry was
+ * last sent. Which peer it was sent to is recorded by the view per shuffle, so
+ * that the first randomView entries removed are those that were sent to the
+ * peer from whom we received the current shuffle response.
  * 
  * @author Cosmin Arad <cosmin@sics.se>, Gautier Berthou
  * @author Alex Ormenisan <aaor@sics.se>
@@ -56,7 +52,8 @@ public class CroupierViewEntry<C extends Object> {
     private final CroupierContainer<C> cc;
     private final long addedAt;
     private long sentAt;
-    private final Set<BasicAddress> sentTo = new HashSet<BasicAddress>();
+    //slot in the view, -1 once removed
+    int index = -1;
 
     public CroupierViewEntry(CroupierContainer<C> cc) {
         this.cc = cc;
@@ -65,8 +62,7 @@ public class CroupierViewEntry<C extends Object> {
     }
 
 
-    public void sentTo(BasicAddress peer) {
-        sentTo.add(peer);
+    public void sent() {
         sentAt = System.currentTimeMillis();
     }
 
@@ -82,10 +78,6 @@ public class CroupierViewEntry<C extends Object> {
         return sentAt;
     }
 
-    public boolean wasSentTo(BasicAddress peer) {
-        return sentTo == null ? false : sentTo.contains(peer);
-    }
-    
     @Override
     public String toString() {
         return cc.toString() + ": addedAt(" + addedAt + "): sentAt:(" + sentAt +")";
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Nodes whose membership entry changed, with the table version of their
+ * latest change, oldest first. Changes already acknowledged by the aggregator
+ * are trimmed, what is left is the content of the next delta status report.
+ */
+public class ChangeLog {
+
+    private static class Change {
+
+        final NatedAddress node;
+        final int version;
+
+        Change(NatedAddress node, int version) {
+            this.node = node;
+            this.version = version;
+        }
+    }
+
+    private final LinkedHashMap<Integer, Change> changes = new LinkedHashMap<Integer, Change>();
+
+    void record(NatedAddress node, int version) {
+        //re-inserted so that the map stays ordered by version
+        changes.remove(node.getId());
+        changes.put(node.getId(), new Change(node, version));
+    }
+
+    /**
+     * drops the changes up to version, the aggregator has them
+     */
+    public void trim(int version) {
+        Iterator<Change> it = changes.values().iterator();
+        while (it.hasNext() && it.next().version <= version) {
+            it.remove();
+        }
+    }
+
+    public List<NatedAddress> nodes() {
+        List<NatedAddress> nodes = new ArrayList<NatedAddress>(changes.size());
+        for (Change change : changes.values()) {
+            nodes.add(change.node);
+        }
+        return nodes;
+    }
+
+    public int size() {
+        return changes.size();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+/**
+ * Queue of membership updates waiting to be piggybacked, bucketed by the
+ * number of times each update was already sent. Buckets are intrusive FIFO
+ * lists threaded through the {@link Member} entries, so handing out the k
+ * least disseminated updates and bumping their counters is O(k) and does
+ * not re-sort anything. Updates are retired once they were sent
+ * <code>limit</code> times.
+ */
+public class DisseminationQueue {
+
+    /**
+     * decides whether one more update fits in the message being built
+     */
+    public interface Budget {
+        public boolean fits(Member member);
+    }
+
+    private Member[] heads;
+    private Member[] tails;
+    private int limit;
+    private int size;
+
+    public DisseminationQueue(int limit) {
+        this.heads = new Member[Math.max(limit, 1)];
+        this.tails = new Member[Math.max(limit, 1)];
+        this.limit = limit;
+        this.size = 0;
+    }
+
+    /**
+     * Retransmission limit of the SWIM paper - lambda * log(n) with n the
+     * group size, so that an update reaches every member with high
+     * probability.
+     */
+    public static int retransmitLimit(int lambda, int groupSize) {
+        return lambda * (int) Math.ceil(Math.log10(groupSize + 1));
+    }
+
+    /**
+     * updates already sent at least limit times are retired on the next take
+     */
+    public void setLimit(int limit) {
+        if (limit > heads.length) {
+            Member[] newHeads = new Member[limit];
+            Member[] newTails = new Member[limit];
+            System.arraycopy(heads, 0, newHeads, 0, heads.length);
+            System.arraycopy(tails, 0, newTails, 0, tails.length);
+            heads = newHeads;
+            tails = newTails;
+        }
+        this.limit = limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * (re)starts the dissemination of the member's current update
+     */
+    public void add(Member member) {
+        if (member.queued) {
+            unlink(member);
+        } else {
+            member.queued = true;
+            size++;
+        }
+        member.counter = 0;
+        link(member);
+    }
+
+    public void remove(Member member) {
+        if (member.queued) {
+            unlink(member);
+            member.queued = false;
+            size--;
+        }
+    }
+
+    /**
+     * Fills buffer with at most max of the least disseminated updates and
+     * counts them as sent once more.
+     *
+     * @return number of updates written to buffer
+     */
+    public int take(Member[] buffer, int max) {
+        return take(buffer, max, null);
+    }
+
+    /**
+     * Same as {@link #take(Member[], int)} but stops at the first update that
+     * does not fit the budget.
+     */
+    public int take(Member[] buffer, int max, Budget budget) {
+        max = Math.min(max, buffer.length);
+        int n = 0;
+        boolean full = false;
+        for (int bucket = 0; bucket < heads.length && n < max && !full; bucket++) {
+            if (bucket >= limit) {
+                retireFrom(bucket);
+                break;
+            }
+            for (Member member = heads[bucket]; member != null && n < max; member = member.next) {
+                if (budget != null && !budget.fits(member)) {
+                    full = true;
+                    break;
+                }
+                buffer[n++] = member;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            Member member = buffer[i];
+            unlink(member);
+            member.counter++;
+            if (member.counter < limit) {
+                link(member);
+            } else {
+                member.queued = false;
+                size--;
+            }
+        }
+        return n;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void retireFrom(int bucket) {
+        for (int i = bucket; i < heads.length; i++) {
+            Member member = heads[i];
+            while (member != null) {
+                Member next = member.next;
+                member.prev = null;
+                member.next = null;
+                member.queued = false;
+                size--;
+                member = next;
+            }
+            heads[i] = null;
+            tails[i] = null;
+        }
+    }
+
+    private void link(Member member) {
+        int bucket = member.counter;
+        member.next = null;
+        member.prev = tails[bucket];
+        if (tails[bucket] == null) {
+            heads[bucket] = member;
+        } else {
+            tails[bucket].next = member;
+        }
+        tails[bucket] = member;
+    }
+
+    private void unlink(Member member) {
+        int bucket = member.counter;
+        if (member.prev == null) {
+            heads[bucket] = member.next;
+        } else {
+            member.prev.next = member.next;
+        }
+        if (member.next == null) {
+            tails[bucket] = member.prev;
+        } else {
+            member.next.prev = member.prev;
+        }
+        member.prev = null;
+        member.next = null;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+/**
+ * Lifeguard local health multiplier. The score goes up whenever this node
+ * shows signs of being slow itself - missed acks, missed nacks, having to
+ * refute a suspicion about itself - and down on every timely ack. Probe
+ * timeouts are stretched by score + 1, so an overloaded node waits longer
+ * before suspecting others instead of spreading false suspicions.
+ */
+public class LocalHealth {
+
+    private final int max;
+    private int score = 0;
+
+    public LocalHealth(int max) {
+        this.max = max;
+    }
+
+    public void probeSucceeded() {
+        decrease();
+    }
+
+    public void probeFailed() {
+        increase();
+    }
+
+    public void nackMissed() {
+        increase();
+    }
+
+    public void refuted() {
+        increase();
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public long scale(long timeout) {
+        return timeout * (score + 1);
+    }
+
+    private void increase() {
+        if (score < max) {
+            score++;
+        }
+    }
+
+    private void decrease() {
+        if (score > 0) {
+            score--;
+        }
+    }
+}
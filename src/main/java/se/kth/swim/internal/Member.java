@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Entry of the {@link MembershipTable}. Holds everything we know about one
+ * node - its address, state, incarnation and how many times the latest update
+ * about it has been piggybacked.
+ */
+public class Member {
+
+    private NatedAddress node;
+    MemberState state;
+    int incarnation;
+    int counter;
+    //links of the dissemination queue bucket this member is in
+    Member prev;
+    Member next;
+    boolean queued;
+    //position in the probe list, -1 when not probed
+    int probeIndex = -1;
+
+    Member(NatedAddress node, MemberState state, int incarnation) {
+        this.node = node;
+        this.state = state;
+        this.incarnation = incarnation;
+        this.counter = 0;
+    }
+
+    public NatedAddress getNode() {
+        return node;
+    }
+
+    void setNode(NatedAddress node) {
+        this.node = node;
+    }
+
+    public int getId() {
+        return node.getId();
+    }
+
+    public MemberState getState() {
+        return state;
+    }
+
+    public int getIncarnation() {
+        return incarnation;
+    }
+
+    /**
+     * number of times the current update about this node was disseminated
+     */
+    public int getCounter() {
+        return counter;
+    }
+
+    @Override
+    public String toString() {
+        return "<" + node.getId() + ":" + state + ":" + incarnation + ">";
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.Random;
+
+/**
+ * Picks k distinct random members of a {@link ProbeList} with a partial
+ * Fisher-Yates shuffle run in place over the list array. The swaps are undone
+ * afterwards so the probe order is left untouched, and nothing is copied.
+ */
+public class MemberSampler {
+
+    private final Random rand;
+    //positions swapped by the current draw, to undo it
+    private int[] swaps = new int[8];
+
+    public MemberSampler(Random rand) {
+        this.rand = rand;
+    }
+
+    /**
+     * @param exclude member never picked, may be null
+     * @param out receives the picked members
+     * @return the number of members picked, at most k
+     */
+    public int sample(ProbeList list, int k, Member exclude, Member[] out) {
+        Member[] members = list.array();
+        int n = list.size();
+        if (swaps.length < n && swaps.length < k + 1) {
+            swaps = new int[Math.min(n, 2 * (k + 1))];
+        }
+        int picked = 0;
+        int i = 0;
+        while (picked < k && i < n) {
+            int j = i + rand.nextInt(n - i);
+            swap(members, i, j);
+            swaps[i] = j;
+            if (members[i] != exclude) {
+                out[picked++] = members[i];
+            }
+            i++;
+        }
+        while (--i >= 0) {
+            swap(members, i, swaps[i]);
+        }
+        return picked;
+    }
+
+    private static void swap(Member[] members, int i, int j) {
+        Member tmp = members[i];
+        members[i] = members[j];
+        members[j] = tmp;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Membership table of the SWIM failure detector, keyed by node id. Each node
+ * has a single {@link Member} entry holding its state, incarnation and
+ * dissemination counter, so a state transition is one lookup and the per
+ * state counters are always consistent with the entries.
+ */
+public class MembershipTable {
+
+    private final HashMap<Integer, Member> members = new HashMap<Integer, Member>();
+    private final int[] counts = new int[MemberState.values().length];
+    /**
+     * members whose latest update is still being piggybacked, one queue per
+     * state
+     */
+    private final EnumMap<MemberState, DisseminationQueue> recent = new EnumMap<MemberState, DisseminationQueue>(MemberState.class);
+    private final ProbeList probes;
+    private final TombstoneStore tombstones;
+    private final ChangeLog changes = new ChangeLog();
+    private final int lambda;
+    private int limitGroupSize = 1;
+    //bumped on every change of the table
+    private int version = 0;
+    //probe round new tombstones are stamped with
+    private long round = 0;
+
+    /**
+     * @param lambda retransmission multiplier - each update is piggybacked
+     * lambda * log(n) times
+     * @param rand source of the probe order
+     * @param tombstoneRounds probe rounds a dead member is remembered for
+     */
+    public MembershipTable(int lambda, Random rand, long tombstoneRounds) {
+        this.lambda = lambda;
+        this.probes = new ProbeList(rand);
+        this.tombstones = new TombstoneStore(tombstoneRounds);
+        int limit = DisseminationQueue.retransmitLimit(lambda, 1);
+        for (MemberState state : MemberState.values()) {
+            recent.put(state, new DisseminationQueue(limit));
+        }
+    }
+
+    public Member get(NatedAddress node) {
+        return members.get(node.getId());
+    }
+
+    public Member get(int nodeId) {
+        return members.get(nodeId);
+    }
+
+    /**
+     * @return the state of the node or null if the node is unknown
+     */
+    public MemberState getState(NatedAddress node) {
+        Member member = members.get(node.getId());
+        return member == null ? null : member.state;
+    }
+
+    public boolean contains(NatedAddress node) {
+        return members.containsKey(node.getId());
+    }
+
+    /**
+     * Moves the node to the given state and incarnation, adding it if it is
+     * unknown. The update is (re)started for dissemination.
+     */
+    public Member update(NatedAddress node, MemberState state, int incarnation) {
+        Member member = members.get(node.getId());
+        if (member == null) {
+            member = new Member(node, state, incarnation);
+            members.put(node.getId(), member);
+            counts[state.ordinal()]++;
+        } else {
+            recent.get(member.state).remove(member);
+            counts[member.state.ordinal()]--;
+            counts[state.ordinal()]++;
+            member.setNode(node);
+            member.state = state;
+            member.incarnation = incarnation;
+        }
+        recent.get(state).add(member);
+        if (state.isLive()) {
+            probes.add(member);
+        } else {
+            probes.remove(member);
+            tombstones.add(member, round);
+        }
+        updateLimit();
+        version++;
+        changes.record(node, version);
+        return member;
+    }
+
+    public Member remove(NatedAddress node) {
+        Member member = members.remove(node.getId());
+        if (member != null) {
+            recent.get(member.state).remove(member);
+            probes.remove(member);
+            counts[member.state.ordinal()]--;
+            updateLimit();
+            version++;
+            changes.record(member.getNode(), version);
+        }
+        return member;
+    }
+
+    /**
+     * Fills buffer with at most max of the least disseminated updates of the
+     * given state that fit the budget and counts them as sent. Updates sent
+     * lambda * log(n) times are no longer disseminated.
+     *
+     * @return number of updates written to buffer
+     */
+    public int disseminate(MemberState state, Member[] buffer, int max, DisseminationQueue.Budget budget) {
+        return recent.get(state).take(buffer, max, budget);
+    }
+
+    /**
+     * @return number of updates of the given state still to be disseminated
+     */
+    public int pending(MemberState state) {
+        return recent.get(state).size();
+    }
+
+    public int count(MemberState state) {
+        return counts[state.ordinal()];
+    }
+
+    /**
+     * @return number of alive and suspected nodes
+     */
+    public int liveCount() {
+        return counts[MemberState.ALIVE.ordinal()] + counts[MemberState.SUSPECT.ordinal()];
+    }
+
+    /**
+     * @return the next live member to probe in the shuffled round-robin order,
+     * or null if there is no live member
+     */
+    public Member nextProbe() {
+        return probes.next();
+    }
+
+    /**
+     * Moves to the given probe round and forgets the dead members whose
+     * tombstone expired by then.
+     *
+     * @return the number of members forgotten
+     */
+    public int reapTombstones(long round) {
+        this.round = round;
+        return tombstones.reap(this, round);
+    }
+
+    /**
+     * changes since the last acknowledged status report
+     */
+    public ChangeLog changes() {
+        return changes;
+    }
+
+    public ProbeList probes() {
+        return probes;
+    }
+
+    /**
+     * @return a number that changes whenever a member is updated or removed
+     */
+    public int version() {
+        return version;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    private void updateLimit() {
+        //group size includes ourselves
+        int groupSize = liveCount() + 1;
+        if (groupSize == limitGroupSize) {
+            return;
+        }
+        limitGroupSize = groupSize;
+        int limit = DisseminationQueue.retransmitLimit(lambda, groupSize);
+        for (DisseminationQueue queue : recent.values()) {
+            queue.setLimit(limit);
+        }
+    }
+
+    public Collection<Member> members() {
+        return members.values();
+    }
+
+    /**
+     * @return a copy of the addresses of the nodes in any of the given states
+     */
+    public Set<NatedAddress> getNodes(MemberState... states) {
+        Set<NatedAddress> nodes = new HashSet<NatedAddress>();
+        for (Member member : members.values()) {
+            for (MemberState state : states) {
+                if (member.state == state) {
+                    nodes.add(member.getNode());
+                    break;
+                }
+            }
+        }
+        return nodes;
+    }
+}
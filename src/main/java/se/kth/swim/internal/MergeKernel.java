@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+/**
+ * SWIM precedence rules for membership updates as a lookup table indexed by
+ * the local state, the state of the update and how the update's incarnation
+ * compares to ours. The kernel has no side effects - the caller applies the
+ * returned action.
+ */
+public class MergeKernel {
+
+    public enum Action {
+
+        /**
+         * the update is stale or already known
+         */
+        IGNORE,
+        /**
+         * the node is alive at the update's incarnation
+         */
+        ALIVE,
+        /**
+         * a dead node came back with a higher incarnation
+         */
+        REJOIN,
+        /**
+         * a new suspicion starts at the update's incarnation
+         */
+        SUSPECT,
+        /**
+         * one more member confirms the ongoing suspicion
+         */
+        CONFIRM,
+        /**
+         * the node is dead
+         */
+        DEAD
+    }
+
+    private static final int OLDER = 0;
+    private static final int SAME = 1;
+    private static final int NEWER = 2;
+    //local state index of a node we know nothing about
+    private static final int UNKNOWN = MemberState.values().length;
+
+    private static final Action I = Action.IGNORE;
+    private static final Action A = Action.ALIVE;
+    private static final Action R = Action.REJOIN;
+    private static final Action S = Action.SUSPECT;
+    private static final Action C = Action.CONFIRM;
+    private static final Action D = Action.DEAD;
+
+    /**
+     * [local state][update state][update incarnation older, same, newer]
+     */
+    private static final Action[][][] TABLE = new Action[][][]{
+        //local ALIVE
+        {{I, I, A}, {I, S, S}, {D, D, D}},
+        //local SUSPECT
+        {{I, I, A}, {I, C, S}, {D, D, D}},
+        //local DEAD - only a higher incarnation brings the node back
+        {{I, I, R}, {I, I, S}, {I, I, D}},
+        //unknown node
+        {{A, A, A}, {S, S, S}, {D, D, D}}
+    };
+
+    private MergeKernel() {
+    }
+
+    /**
+     * @param local current state of the node, null if unknown
+     */
+    public static Action merge(MemberState local, int localIncarnation, MemberState remote, int remoteIncarnation) {
+        int row = local == null ? UNKNOWN : local.ordinal();
+        int cmp = remoteIncarnation < localIncarnation ? OLDER : (remoteIncarnation == localIncarnation ? SAME : NEWER);
+        return TABLE[row][remote.ordinal()][cmp];
+    }
+
+    public static Action merge(Member local, MemberState remote, int remoteIncarnation) {
+        if (local == null) {
+            return merge(null, 0, remote, remoteIncarnation);
+        }
+        return merge(local.getState(), local.getIncarnation(), remote, remoteIncarnation);
+    }
+
+    /**
+     * Incarnation to store with the action of an update. A stale death
+     * still kills the node but never lowers its incarnation, or an older
+     * alive update would later bring it back.
+     */
+    public static int incarnation(Member local, int remoteIncarnation) {
+        return local == null ? remoteIncarnation : Math.max(local.getIncarnation(), remoteIncarnation);
+    }
+
+    /**
+     * Merge of an update about ourselves: any suspicion or death at our
+     * current incarnation or later is refuted by moving past it.
+     *
+     * @return our new incarnation
+     */
+    public static int mergeSelf(int incarnation, MemberState remote, int remoteIncarnation) {
+        if (remote != MemberState.ALIVE && remoteIncarnation >= incarnation) {
+            return remoteIncarnation + 1;
+        }
+        return incarnation;
+    }
+}
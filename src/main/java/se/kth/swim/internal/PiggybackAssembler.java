@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import se.kth.swim.NodeAndCounter;
+import se.kth.swim.msg.serializer.SwimCodec;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Fills the piggyback sets of a pong up to a byte budget so that the whole
+ * message fits in one datagram. Dead updates go first, then suspicions, then
+ * alive updates, and within each state the least disseminated updates win.
+ * <p>
+ * The sets are immutable snapshots shared by all the pongs of a protocol
+ * round, a new snapshot is only taken once the membership or our own
+ * incarnation changed. Updates of a snapshot are counted as sent once.
+ * <p>
+ * The parents of all the addresses of a message are kept under
+ * {@link SwimCodec#MAX_SMALL_DICTIONARY} so that the one byte parent indexes
+ * the sizes count for are what the codec writes.
+ */
+public class PiggybackAssembler implements DisseminationQueue.Budget {
+
+    //smallest encoded update: flags, id, ipv4, port, incarnation
+    private static final int MIN_UPDATE_SIZE = 9;
+
+    private final int maxMessageSize;
+    private final Member[] buffer;
+    //parents already in the dictionary of the message being assembled
+    private final Set<Integer> parents = new HashSet<Integer>();
+    //dictionary entries kept for the parents of the destination addresses
+    private int reservedParents;
+    private int remaining;
+    private Snapshot snapshot;
+
+    public PiggybackAssembler(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+        //no message can hold more than this many updates
+        this.buffer = new Member[maxMessageSize / MIN_UPDATE_SIZE + 1];
+    }
+
+    /**
+     * the next pong takes a fresh snapshot
+     */
+    public void nextRound() {
+        snapshot = null;
+    }
+
+    /**
+     * @param src sender of the message
+     * @param dst destination of the message
+     * @param self alive update about ourselves, always sent first. A new self
+     * update invalidates the current snapshot.
+     */
+    public Snapshot assemble(MembershipTable members, NatedAddress src, NatedAddress dst, NodeAndCounter self) {
+        //the pong also carries dst as the relayed node
+        int dstSize = 2 * fullAddressSize(dst);
+        int dstParents = parentCount(dst);
+        if (snapshot != null && snapshot.version == members.version() && snapshot.self == self
+                && dstSize <= snapshot.dstReserved && dstParents <= snapshot.dstParents) {
+            return snapshot;
+        }
+        parents.clear();
+        reservedParents = dstParents;
+        remaining = maxMessageSize - SwimCodec.PONG_OVERHEAD - dstSize
+                - addressSize(src) - updateSize(self.getNode(), self.getCounter());
+        Set<NodeAndCounter> alive = new HashSet<NodeAndCounter>();
+        Set<NodeAndCounter> suspect = new HashSet<NodeAndCounter>();
+        Set<NodeAndCounter> dead = new HashSet<NodeAndCounter>();
+        alive.add(self);
+        fill(members, MemberState.DEAD, dead);
+        fill(members, MemberState.SUSPECT, suspect);
+        fill(members, MemberState.ALIVE, alive);
+        snapshot = new Snapshot(members.version(), self, dstSize, dstParents, alive, suspect, dead);
+        return snapshot;
+    }
+
+    /**
+     * Keeps the updates of a received pong that fit in the pong req a relay
+     * forwards them in: dead first, then suspicions, then alive updates, with
+     * the relayed node's own alive update ahead of all. The forwarded message
+     * goes to another destination and also carries the relayed node, so the
+     * sets the relayed node sized for its pong may not fit as they are. The
+     * given sets are not changed and the cached snapshot is kept.
+     *
+     * @param src the relay
+     * @param dst the node that asked for the indirect ping
+     * @param relayed the node that answered it
+     */
+    public Snapshot forward(NatedAddress src, NatedAddress dst, NatedAddress relayed,
+            Set<NodeAndCounter> alive, Set<NodeAndCounter> suspect, Set<NodeAndCounter> dead) {
+        parents.clear();
+        reservedParents = parentCount(dst) + parentCount(relayed);
+        remaining = maxMessageSize - SwimCodec.PONG_OVERHEAD - fullAddressSize(dst) - fullAddressSize(relayed)
+                - addressSize(src);
+        Set<NodeAndCounter> keptAlive = new HashSet<NodeAndCounter>();
+        Set<NodeAndCounter> keptSuspect = new HashSet<NodeAndCounter>();
+        Set<NodeAndCounter> keptDead = new HashSet<NodeAndCounter>();
+        for (NodeAndCounter update : alive) {
+            if (update.getNode().getId().equals(relayed.getId()) && fits(update.getNode(), update.getCounter())) {
+                keptAlive.add(update);
+            }
+        }
+        keep(dead, keptDead, null);
+        keep(suspect, keptSuspect, null);
+        keep(alive, keptAlive, relayed);
+        return new Snapshot(-1, null, 0, 0, keptAlive, keptSuspect, keptDead);
+    }
+
+    /**
+     * @param skip node whose update was already kept, or null
+     */
+    private void keep(Set<NodeAndCounter> updates, Set<NodeAndCounter> kept, NatedAddress skip) {
+        for (NodeAndCounter update : updates) {
+            if (skip != null && update.getNode().getId().equals(skip.getId())) {
+                continue;
+            }
+            if (fits(update.getNode(), update.getCounter())) {
+                kept.add(update);
+            }
+        }
+    }
+
+    private void fill(MembershipTable members, MemberState state, Set<NodeAndCounter> updates) {
+        int n = members.disseminate(state, buffer, buffer.length, this);
+        for (int i = 0; i < n; i++) {
+            updates.add(new NodeAndCounter(buffer[i].getNode(), buffer[i].getIncarnation()));
+            buffer[i] = null;
+        }
+    }
+
+    public boolean fits(Member member) {
+        return fits(member.getNode(), member.getIncarnation());
+    }
+
+    private boolean fits(NatedAddress node, int incarnation) {
+        int size = SwimCodec.updateSize(node, incarnation) + newParentsSize(node);
+        if (size > remaining
+                || parents.size() + newParentsCount(node) + reservedParents > SwimCodec.MAX_SMALL_DICTIONARY) {
+            return false;
+        }
+        remaining -= size;
+        addParents(node);
+        return true;
+    }
+
+    private int updateSize(NatedAddress node, int incarnation) {
+        int size = SwimCodec.updateSize(node, incarnation) + newParentsSize(node);
+        addParents(node);
+        return size;
+    }
+
+    private int addressSize(NatedAddress node) {
+        int size = SwimCodec.addressSize(node, 0) + newParentsSize(node);
+        addParents(node);
+        return size;
+    }
+
+    /**
+     * size of the address with all its parents, whatever the dictionary holds
+     */
+    private static int fullAddressSize(NatedAddress node) {
+        int size = SwimCodec.addressSize(node, 0);
+        if (!node.isOpen()) {
+            for (NatedAddress parent : node.getParents()) {
+                size += SwimCodec.parentSize(parent);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * size of the parents of node that are not yet in the dictionary
+     */
+    private int newParentsSize(NatedAddress node) {
+        if (node.isOpen()) {
+            return 0;
+        }
+        int size = 0;
+        for (NatedAddress parent : node.getParents()) {
+            if (!parents.contains(parent.getId())) {
+                size += SwimCodec.parentSize(parent);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * number of the parents of node that are not yet in the dictionary
+     */
+    private int newParentsCount(NatedAddress node) {
+        if (node.isOpen()) {
+            return 0;
+        }
+        int count = 0;
+        for (NatedAddress parent : node.getParents()) {
+            if (!parents.contains(parent.getId())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int parentCount(NatedAddress node) {
+        return node.isOpen() ? 0 : node.getParents().size();
+    }
+
+    private void addParents(NatedAddress node) {
+        if (!node.isOpen()) {
+            for (NatedAddress parent : node.getParents()) {
+                parents.add(parent.getId());
+            }
+        }
+    }
+
+    public static class Snapshot {
+
+        public final Set<NodeAndCounter> alive;
+        public final Set<NodeAndCounter> suspect;
+        public final Set<NodeAndCounter> dead;
+        private final int version;
+        private final NodeAndCounter self;
+        //bytes left for the destination addresses
+        private final int dstReserved;
+        //dictionary entries left for the parents of the destination
+        private final int dstParents;
+
+        Snapshot(int version, NodeAndCounter self, int dstReserved, int dstParents,
+                Set<NodeAndCounter> alive, Set<NodeAndCounter> suspect, Set<NodeAndCounter> dead) {
+            this.version = version;
+            this.self = self;
+            this.dstReserved = dstReserved;
+            this.dstParents = dstParents;
+            this.alive = Collections.unmodifiableSet(alive);
+            this.suspect = Collections.unmodifiableSet(suspect);
+            this.dead = Collections.unmodifiableSet(dead);
+        }
+    }
+}
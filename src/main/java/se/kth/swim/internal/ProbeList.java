@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.Random;
+
+/**
+ * Probe order of the live members, as in the SWIM paper: members are probed
+ * round-robin and the list is shuffled at the start of every pass. New
+ * members are inserted at a random position among the ones not yet probed
+ * in the current pass, so every live member is probed at most once per pass
+ * and at least once every two passes.
+ */
+public class ProbeList {
+
+    private final Random rand;
+    private Member[] members = new Member[16];
+    private int size = 0;
+    //members before this index were already probed in the current pass
+    private int next = 0;
+
+    public ProbeList(Random rand) {
+        this.rand = rand;
+    }
+
+    public void add(Member member) {
+        if (member.probeIndex >= 0) {
+            return;
+        }
+        if (size == members.length) {
+            Member[] grown = new Member[size * 2];
+            System.arraycopy(members, 0, grown, 0, size);
+            members = grown;
+        }
+        int pos = next + rand.nextInt(size - next + 1);
+        //the member at pos is moved to the end, still unprobed in this pass
+        place(members[pos], size);
+        place(member, pos);
+        size++;
+    }
+
+    public void remove(Member member) {
+        int pos = member.probeIndex;
+        if (pos < 0) {
+            return;
+        }
+        if (pos < next) {
+            //keep the probed part contiguous
+            next--;
+            place(members[next], pos);
+            place(member, next);
+            pos = next;
+        }
+        size--;
+        place(members[size], pos);
+        members[size] = null;
+        member.probeIndex = -1;
+    }
+
+    /**
+     * @return the next member to probe, or null if there is none
+     */
+    public Member next() {
+        if (size == 0) {
+            return null;
+        }
+        if (next >= size) {
+            shuffle();
+            next = 0;
+        }
+        return members[next++];
+    }
+
+    public boolean contains(Member member) {
+        return member.probeIndex >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * members currently probed, only the first {@link #size()} entries are
+     * valid
+     */
+    Member[] array() {
+        return members;
+    }
+
+    private void shuffle() {
+        for (int i = size - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            Member tmp = members[i];
+            place(members[j], i);
+            place(tmp, j);
+        }
+    }
+
+    private void place(Member member, int pos) {
+        members[pos] = member;
+        if (member != null) {
+            member.probeIndex = pos;
+        }
+    }
+}
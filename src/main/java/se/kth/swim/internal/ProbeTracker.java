@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.UUID;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Outstanding probes of this node, keyed by probe sequence number. The probes
+ * live in a fixed ring of reused slots: starting a probe takes the slot of
+ * seq, so a probe is forgotten at the latest when capacity newer probes were
+ * started. Acks and timeouts are matched on the exact sequence number, a late
+ * ack of an older round never completes the current one.
+ * <p>
+ * The tracker numbers the probes itself with even sequence numbers, so that
+ * the other pings of the node, which take odd ones, neither reuse the slot
+ * of a live probe nor answer for one.
+ */
+public class ProbeTracker {
+
+    public static class Probe {
+
+        private int seq;
+        private NatedAddress target;
+        private boolean active;
+        private boolean indirect;
+        private UUID timeoutId;
+        private int pendingNacks;
+
+        public int getSeq() {
+            return seq;
+        }
+
+        public NatedAddress getTarget() {
+            return target;
+        }
+
+        /**
+         * @return true once the direct ping timed out and helpers were asked
+         */
+        public boolean isIndirect() {
+            return indirect;
+        }
+
+        public UUID getTimeoutId() {
+            return timeoutId;
+        }
+
+        public void setTimeoutId(UUID timeoutId) {
+            this.timeoutId = timeoutId;
+        }
+
+        public int getPendingNacks() {
+            return pendingNacks;
+        }
+
+        public void nacked() {
+            if (pendingNacks > 0) {
+                pendingNacks--;
+            }
+        }
+
+        /**
+         * the probe continues through helpers that each owe us a nack
+         */
+        public void goIndirect(int helpers) {
+            indirect = true;
+            pendingNacks = helpers;
+        }
+    }
+
+    private final Probe[] ring;
+    private int nextSeq = 0;
+
+    public ProbeTracker(int capacity) {
+        this.ring = new Probe[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Probe();
+        }
+    }
+
+    /**
+     * @return the probe of target, numbered with the next even sequence
+     * number
+     */
+    public Probe start(NatedAddress target) {
+        int seq = nextSeq;
+        nextSeq += 2;
+        Probe probe = ring[slot(seq / 2)];
+        probe.seq = seq;
+        probe.target = target;
+        probe.active = true;
+        probe.indirect = false;
+        probe.timeoutId = null;
+        probe.pendingNacks = 0;
+        return probe;
+    }
+
+    /**
+     * @return the outstanding probe with this sequence number, or null if it
+     * completed or was overwritten
+     */
+    public Probe get(int seq) {
+        Probe probe = ring[slot(seq / 2)];
+        return probe.active && probe.seq == seq ? probe : null;
+    }
+
+    /**
+     * @return the outstanding probe with this sequence number if it targets
+     * node, null otherwise
+     */
+    public Probe get(int seq, NatedAddress node) {
+        Probe probe = get(seq);
+        return probe != null && probe.target.getId().equals(node.getId()) ? probe : null;
+    }
+
+    public void finish(Probe probe) {
+        probe.active = false;
+        probe.target = null;
+        probe.timeoutId = null;
+    }
+
+    private int slot(int seq) {
+        return (seq & Integer.MAX_VALUE) % ring.length;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Indirect pings this node is relaying, keyed by the sequence number of the
+ * ping it sent to the target. The table is a fixed ring: a request is
+ * forgotten when the relay removes it, on the target's answer or on its own
+ * timer, or when its slot is reused by a newer one, so a relay flooded with
+ * requests keeps bounded state.
+ */
+public class RelayTable {
+
+    public static class Entry {
+
+        public final int seq;
+        public final NatedAddress requester;
+        public final NatedAddress target;
+        //sequence number of the request, echoed back to the requester
+        public final int requesterSeq;
+
+        Entry(int seq, NatedAddress requester, NatedAddress target, int requesterSeq) {
+            this.seq = seq;
+            this.requester = requester;
+            this.target = target;
+            this.requesterSeq = requesterSeq;
+        }
+    }
+
+    private final Entry[] slots;
+
+    /**
+     * @param capacity maximum number of requests relayed at once
+     */
+    public RelayTable(int capacity) {
+        this.slots = new Entry[capacity];
+    }
+
+    public void put(int seq, NatedAddress requester, NatedAddress target, int requesterSeq) {
+        slots[slot(seq)] = new Entry(seq, requester, target, requesterSeq);
+    }
+
+    /**
+     * @return the request relayed with seq, or null if it is unknown
+     */
+    public Entry get(int seq) {
+        Entry entry = slots[slot(seq)];
+        if (entry == null || entry.seq != seq) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * forgets the request relayed with seq, if it is still there
+     */
+    public void remove(int seq) {
+        if (get(seq) != null) {
+            slots[slot(seq)] = null;
+        }
+    }
+
+    /**
+     * @return the request relayed with seq if target is the node it was sent
+     * to, null otherwise. The request is forgotten.
+     */
+    public Entry remove(int seq, NatedAddress target) {
+        Entry entry = get(seq);
+        if (entry == null || !entry.target.getId().equals(target.getId())) {
+            return null;
+        }
+        slots[slot(seq)] = null;
+        return entry;
+    }
+
+    private int slot(int seq) {
+        return (seq & Integer.MAX_VALUE) % slots.length;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Ongoing suspicion about one node at one incarnation. It owns the single
+ * suspicion timer of the node and the set of independent members that
+ * confirmed it. Only a new confirmer moves the deadline, and only until the
+ * timeout reached its minimum, so a suspicion gossiped by many peers
+ * reschedules its timer a bounded number of times.
+ * <p>
+ * Times are protocol time as given by the caller, not the host clock, so
+ * that the timeout does not depend on how fast a simulation runs.
+ */
+public class Suspicion {
+
+    private final NatedAddress node;
+    private final int incarnation;
+    private final long start;
+    private final SuspicionTimeout timeout;
+    //whoever told us first, not a confirmation
+    private final int origin;
+    private final Set<Integer> confirmers = new HashSet<Integer>();
+    private final int expected;
+    private UUID timeoutId;
+
+    /**
+     * @param origin id of the member the suspicion came from
+     * @param expected confirmations after which the deadline no longer moves
+     * @param now protocol time in ms at which the suspicion starts
+     */
+    public Suspicion(NatedAddress node, int incarnation, int origin, SuspicionTimeout timeout, int expected, long now) {
+        this.node = node;
+        this.incarnation = incarnation;
+        this.origin = origin;
+        this.timeout = timeout;
+        this.expected = expected;
+        this.start = now;
+    }
+
+    /**
+     * @return true if the confirmation is new and brings the deadline closer
+     */
+    public boolean confirm(int confirmer) {
+        if (confirmer == origin || confirmers.size() >= expected) {
+            return false;
+        }
+        return confirmers.add(confirmer);
+    }
+
+    /**
+     * @param now protocol time in ms
+     * @return ms until the node should be declared dead
+     */
+    public long remaining(long now) {
+        return timeout.remaining(confirmers.size(), now - start);
+    }
+
+    public NatedAddress getNode() {
+        return node;
+    }
+
+    public int getIncarnation() {
+        return incarnation;
+    }
+
+    public int getConfirmations() {
+        return confirmers.size();
+    }
+
+    public UUID getTimeoutId() {
+        return timeoutId;
+    }
+
+    public void setTimeoutId(UUID timeoutId) {
+        this.timeoutId = timeoutId;
+    }
+}
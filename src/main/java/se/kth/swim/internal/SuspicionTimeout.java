@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+/**
+ * Lifeguard suspicion timeout. It starts at max and decreases
+ * logarithmically with the number of independent confirmations, reaching
+ * min once the expected number of confirmations arrived. Both bounds grow
+ * with log(n) so that the suspicion has time to reach the whole group.
+ */
+public class SuspicionTimeout {
+
+    private final long min;
+    private final long max;
+    private final int expected;
+
+    public SuspicionTimeout(long min, long max, int expected) {
+        this.min = min;
+        this.max = Math.max(min, max);
+        this.expected = expected;
+    }
+
+    /**
+     * @param minMultiplier minimum in probe periods per log10 of the group size
+     * @param maxMultiplier maximum as a multiple of the minimum
+     */
+    public static SuspicionTimeout forGroup(int groupSize, long probePeriod,
+            int minMultiplier, int maxMultiplier, int expected) {
+        double scale = Math.max(1, Math.log10(Math.max(1, groupSize)));
+        long min = (long) (minMultiplier * scale * probePeriod);
+        return new SuspicionTimeout(min, maxMultiplier * min, expected);
+    }
+
+    public long timeout(int confirmations) {
+        if (expected < 1 || confirmations >= expected) {
+            return min;
+        }
+        double frac = Math.log(confirmations + 1) / Math.log(expected + 1);
+        long timeout = (long) (max - frac * (max - min));
+        return Math.max(min, timeout);
+    }
+
+    /**
+     * @return time left after elapsed ms, never negative
+     */
+    public long remaining(int confirmations, long elapsed) {
+        return Math.max(0, timeout(confirmations) - elapsed);
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+}
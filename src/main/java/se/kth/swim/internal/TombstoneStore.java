@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.LinkedList;
+
+/**
+ * Dead members in the order they died. A dead member is only kept as long as
+ * it takes for its death to reach the group and for stale alive updates
+ * about it to die out; after the time to live its tombstone is reaped and the
+ * member is forgotten. Time is counted in probe rounds so that it follows the
+ * protocol, not the host clock. Since members die in time order, reaping only
+ * looks at the head of the queue.
+ */
+public class TombstoneStore {
+
+    private static class Tombstone {
+
+        final Member member;
+        final int incarnation;
+        final long expiresAt;
+
+        Tombstone(Member member, long expiresAt) {
+            this.member = member;
+            this.incarnation = member.incarnation;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * a member that rejoined or died again later has a newer tombstone,
+         * or none
+         */
+        boolean isCurrent() {
+            return member.state == MemberState.DEAD && member.incarnation == incarnation;
+        }
+    }
+
+    private final LinkedList<Tombstone> queue = new LinkedList<Tombstone>();
+    private final long ttl;
+
+    /**
+     * @param ttl probe rounds a tombstone is kept for
+     */
+    public TombstoneStore(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param now current probe round
+     */
+    public void add(Member member, long now) {
+        queue.addLast(new Tombstone(member, now + ttl));
+    }
+
+    /**
+     * Removes the members whose tombstone expired from the table.
+     *
+     * @return the number of members reaped
+     */
+    public int reap(MembershipTable table, long now) {
+        int reaped = 0;
+        while (!queue.isEmpty() && queue.getFirst().expiresAt <= now) {
+            Tombstone tombstone = queue.removeFirst();
+            if (tombstone.isCurrent() && table.get(tombstone.member.getId()) == tombstone.member) {
+                table.remove(tombstone.member.getNode());
+                reaped++;
+            }
+        }
+        return reaped;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+}
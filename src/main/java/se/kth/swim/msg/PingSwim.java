@@ -29,10 +29,18 @@ public class PingSwim extends Ping{
 	
 	public NatedAddress nodeToPing ;
 	public int incarnNbr ;
+	//matches the answer to the request
+	public int seqNbr ;
 	
 	public PingSwim(NatedAddress topPingNode, int incarn){
 		nodeToPing = topPingNode;
 		incarnNbr = incarn;
 	}
 	
+	public PingSwim(NatedAddress topPingNode, int incarn, int seq){
+		nodeToPing = topPingNode;
+		incarnNbr = incarn;
+		seqNbr = seq;
+	}
+	
 }
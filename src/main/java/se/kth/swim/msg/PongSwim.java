@@ -1,24 +1,27 @@
 package se.kth.swim.msg;
 
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Set;
 
 import se.kth.swim.NodeAndCounter;
 import se.sics.p2ptoolbox.util.network.NatedAddress;
 
 public class PongSwim extends Pong{
-	public HashSet<NodeAndCounter> aliveNodes = new HashSet<NodeAndCounter>();
-	public HashSet<NodeAndCounter>  suspectedNode =  new HashSet<NodeAndCounter>();
-	public HashSet<NodeAndCounter>  deadNodes =  new HashSet<NodeAndCounter>();
+	public Set<NodeAndCounter> aliveNodes;
+	public Set<NodeAndCounter>  suspectedNode;
+	public Set<NodeAndCounter>  deadNodes;
 
 	public NatedAddress nodeRelayed ;
+	//sequence number of the ping this pong answers
+	public int seqNbr ;
 	
-	public PongSwim(String messageIn, HashSet<NodeAndCounter> aliveNodes, HashSet<NodeAndCounter> suspectedNode, HashSet<NodeAndCounter> deadNodes){
+	public PongSwim(String messageIn, Set<NodeAndCounter> aliveNodes, Set<NodeAndCounter> suspectedNode, Set<NodeAndCounter> deadNodes){
 		this.aliveNodes= aliveNodes;
 		this.suspectedNode = suspectedNode;
 		this.deadNodes=deadNodes;
 		this.message = messageIn;
 	}
-	public PongSwim(String messageIn, HashSet<NodeAndCounter> aliveNodes, HashSet<NodeAndCounter> suspectedNode, HashSet<NodeAndCounter> deadNodes, NatedAddress relayedNode){
+	public PongSwim(String messageIn, Set<NodeAndCounter> aliveNodes, Set<NodeAndCounter> suspectedNode, Set<NodeAndCounter> deadNodes, NatedAddress relayedNode){
 		this.nodeRelayed = relayedNode;
 		this.aliveNodes= aliveNodes;
 		this.suspectedNode = suspectedNode;
@@ -26,8 +29,15 @@ public class PongSwim extends Pong{
 		
 		message = messageIn;
 	}
+	public PongSwim(String messageIn, Set<NodeAndCounter> aliveNodes, Set<NodeAndCounter> suspectedNode, Set<NodeAndCounter> deadNodes, NatedAddress relayedNode, int seq){
+		this(messageIn, aliveNodes, suspectedNode, deadNodes, relayedNode);
+		this.seqNbr = seq;
+	}
 	
 	public PongSwim(){
+		this.aliveNodes = Collections.emptySet();
+		this.suspectedNode = Collections.emptySet();
+		this.deadNodes = Collections.emptySet();
 		message = "";
 	}
 }
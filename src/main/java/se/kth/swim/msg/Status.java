@@ -22,6 +22,7 @@ package se.kth.swim.msg;
 import java.util.HashSet;
 import java.util.Set;
 
+import se.kth.swim.TrafficStats;
 import se.sics.p2ptoolbox.util.network.NatedAddress;
 
 /**
@@ -32,11 +33,42 @@ public class Status {
     public Set<NatedAddress> aliveNodes ;
     public Set<NatedAddress> suspectedNodes ;
     public Set<NatedAddress> deadNodes ;
+    //membership version of the sender this report brings the aggregator to
+    public int seq ;
+    //version a delta report starts from
+    public int baseSeq ;
+    //full snapshot or only the changes since baseSeq
+    public boolean full ;
+    //nodes the sender forgot since baseSeq
+    public Set<NatedAddress> removedNodes ;
+    //messages and bytes of the sender since it started
+    public TrafficStats traffic ;
     
 	public Status(int receivedPings, Set<NatedAddress> aliveNodes, Set<NatedAddress> suspectedNodes, Set<NatedAddress> deadNodes ) {
 	        this.receivedPings = receivedPings;
 	        this.aliveNodes = new HashSet<NatedAddress>(aliveNodes);
 	        this.suspectedNodes = new HashSet<NatedAddress>(suspectedNodes);
 	        this.deadNodes = new HashSet<NatedAddress>(deadNodes);
+	        this.removedNodes = new HashSet<NatedAddress>();
+	        this.traffic = new TrafficStats();
+	        this.full = true;
+	    }
+
+	/**
+	 * the sets are used as is, alive nodes include the suspected ones as in a
+	 * full report
+	 */
+	public Status(int receivedPings, int seq, int baseSeq, boolean full, Set<NatedAddress> aliveNodes,
+			Set<NatedAddress> suspectedNodes, Set<NatedAddress> deadNodes, Set<NatedAddress> removedNodes,
+			TrafficStats traffic) {
+	        this.receivedPings = receivedPings;
+	        this.seq = seq;
+	        this.baseSeq = baseSeq;
+	        this.full = full;
+	        this.aliveNodes = aliveNodes;
+	        this.suspectedNodes = suspectedNodes;
+	        this.deadNodes = deadNodes;
+	        this.removedNodes = removedNodes;
+	        this.traffic = traffic;
 	    }
 	}
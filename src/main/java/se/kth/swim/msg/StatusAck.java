@@ -0,0 +1,14 @@
+package se.kth.swim.msg;
+
+/**
+ * Acknowledges the status report with membership version seq, later delta
+ * reports start from it.
+ */
+public class StatusAck {
+
+	public int seq;
+
+	public StatusAck(int seq) {
+		this.seq = seq;
+	}
+}
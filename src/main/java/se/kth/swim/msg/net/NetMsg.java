@@ -18,6 +18,8 @@
  */
 package se.kth.swim.msg.net;
 
+import java.io.ObjectStreamException;
+import se.kth.swim.msg.serializer.SwimCodec;
 import se.sics.kompics.network.Header;
 import se.sics.kompics.network.Transport;
 import se.sics.p2ptoolbox.util.network.NatedAddress;
@@ -37,4 +39,12 @@ public abstract class NetMsg<C extends Object> extends BasicContentMsg<NatedAddr
         super(header, content);
     }
     public abstract NetMsg copyMessage(Header<NatedAddress> newHeader);
+
+    /**
+     * SWIM messages are serialized through {@link SwimCodec} instead of as an
+     * object graph.
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        return SwimCodec.replacement(this);
+    }
 }
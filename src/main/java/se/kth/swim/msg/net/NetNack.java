@@ -0,0 +1,34 @@
+package se.kth.swim.msg.net;
+
+import java.io.Serializable;
+import se.kth.swim.msg.PingSwim;
+import se.sics.kompics.network.Header;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Sent by a relay of an indirect ping when the node it pinged did not answer
+ * in time, so that the requester knows the relay itself is alive.
+ */
+public class NetNack extends NetMsg<PingSwim> implements Serializable {
+
+	public NatedAddress getNodeToPing(){
+		return getContent().nodeToPing;
+	}
+
+	public int getSeqNbr(){
+		return getContent().seqNbr;
+	}
+
+    public NetNack(NatedAddress src, NatedAddress dst, NatedAddress toPing, int incarn, int seq) {
+        super(src, dst, new PingSwim(toPing, incarn, seq));
+    }
+
+    private NetNack(Header<NatedAddress> header, PingSwim content) {
+        super(header, content);
+    }
+
+    @Override
+    public NetMsg copyMessage(Header<NatedAddress> newHeader) {
+        return new NetNack(newHeader, getContent());
+    }
+}
@@ -18,6 +18,7 @@
  */
 package se.kth.swim.msg.net;
 
+import java.io.Serializable;
 import se.kth.swim.msg.PingSwim;
 import se.sics.kompics.network.Header;
 import se.sics.p2ptoolbox.util.network.NatedAddress;
@@ -25,16 +26,24 @@ import se.sics.p2ptoolbox.util.network.NatedAddress;
 /**
  * @author Alex Ormenisan <aaor@sics.se>
  */
-public class NetPing extends NetMsg<PingSwim> {
+public class NetPing extends NetMsg<PingSwim> implements Serializable {
 
 	public int getIncarnNbr(){
 		return getContent().incarnNbr;
 	}
 	
+	public int getSeqNbr(){
+		return getContent().seqNbr;
+	}
+	
     public NetPing(NatedAddress src, NatedAddress dst, int incarn) {
         super(src, dst, new PingSwim(dst, incarn));
     }
 
+    public NetPing(NatedAddress src, NatedAddress dst, int incarn, int seq) {
+        super(src, dst, new PingSwim(dst, incarn, seq));
+    }
+
     private NetPing(Header<NatedAddress> header, PingSwim content) {
         super(header, content);
     }
@@ -1,15 +1,20 @@
 package se.kth.swim.msg.net;
 
+import java.io.Serializable;
 import se.kth.swim.msg.PingSwim;
 import se.sics.kompics.network.Header;
 import se.sics.p2ptoolbox.util.network.NatedAddress;
 
-public class NetPingReq extends NetMsg<PingSwim>  {
+public class NetPingReq extends NetMsg<PingSwim> implements Serializable {
 	
 	public NatedAddress getNodeToPing(){
 		return getContent().nodeToPing;
 	}
 	
+	public int getSeqNbr(){
+		return getContent().seqNbr;
+	}
+	
     public NetPingReq(NatedAddress src, NatedAddress dst, int incarn) {
         super(src, dst, new PingSwim(null, incarn));
     }
@@ -21,6 +26,10 @@ public class NetPingReq extends NetMsg<PingSwim>  {
         super(src, dst, new PingSwim(toPing, incarn));
     }
 
+    public NetPingReq(NatedAddress src, NatedAddress dst, NatedAddress toPing, int incarn, int seq) {
+        super(src, dst, new PingSwim(toPing, incarn, seq));
+    }
+
     private NetPingReq(Header<NatedAddress> header, PingSwim content, NatedAddress toPing) {
         super(header, content);
     }
@@ -19,6 +19,7 @@
 
 package se.kth.swim.msg.net;
 
+import java.io.Serializable;
 import se.kth.swim.msg.Status;
 import se.sics.kompics.network.Header;
 import se.sics.p2ptoolbox.util.network.NatedAddress;
@@ -27,7 +28,7 @@ import se.sics.p2ptoolbox.util.network.NatedAddress;
  *
  * @author Alex Ormenisan <aaor@sics.se>
  */
-public class NetStatus extends NetMsg<Status> {
+public class NetStatus extends NetMsg<Status> implements Serializable {
 
     public NetStatus(NatedAddress src, NatedAddress dst, Status status) {
         super(src, dst, status);
@@ -0,0 +1,26 @@
+package se.kth.swim.msg.net;
+
+import java.io.Serializable;
+import se.kth.swim.msg.StatusAck;
+import se.sics.kompics.network.Header;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+public class NetStatusAck extends NetMsg<StatusAck> implements Serializable {
+
+    public NetStatusAck(NatedAddress src, NatedAddress dst, int seq) {
+        super(src, dst, new StatusAck(seq));
+    }
+
+    private NetStatusAck(Header<NatedAddress> header, StatusAck content) {
+        super(header, content);
+    }
+
+    public int getSeq() {
+        return getContent().seq;
+    }
+
+    @Override
+    public NetMsg copyMessage(Header<NatedAddress> newHeader) {
+        return new NetStatusAck(newHeader, getContent());
+    }
+}
@@ -1,7 +1,6 @@
 package se.kth.swim.msg.net;
 
 import java.io.Serializable;
-import java.util.HashSet;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -21,26 +20,32 @@ public class PiggyPong extends NetMsg<PongSwim> implements Serializable {
 	 */
 	private static final long serialVersionUID = -7148938753157677355L;
 		
-		public HashSet<NodeAndCounter> getAliveNodes(){
+		public Set<NodeAndCounter> getAliveNodes(){
 			return getContent().aliveNodes;
 		}
-		public HashSet<NodeAndCounter> getSuspNodes(){
+		public Set<NodeAndCounter> getSuspNodes(){
 			return getContent().suspectedNode;
 		}
-		public HashSet<NodeAndCounter> getDeadNodes(){
+		public Set<NodeAndCounter> getDeadNodes(){
 			return getContent().deadNodes;
 		}
+		public int getSeqNbr(){
+			return getContent().seqNbr;
+		}
 		
-	   public PiggyPong(NatedAddress src, NatedAddress dst, HashSet<NodeAndCounter> aliveNodes, HashSet<NodeAndCounter>  suspectedNodes, HashSet<NodeAndCounter>  deadNodes) {
+	   public PiggyPong(NatedAddress src, NatedAddress dst, Set<NodeAndCounter> aliveNodes, Set<NodeAndCounter>  suspectedNodes, Set<NodeAndCounter>  deadNodes) {
 	        super(src, dst, new PongSwim("", aliveNodes, suspectedNodes, deadNodes, dst));
 	       // log.info("IN PIGGY {}",this.getContent().aliveNodes.size());
 	   }
-	   public PiggyPong(NatedAddress src, NatedAddress dst, HashSet<NodeAndCounter> aliveNodes, HashSet<NodeAndCounter>  suspectedNodes, HashSet<NodeAndCounter>  deadNodes, NatedAddress relayedNode) {
+	   public PiggyPong(NatedAddress src, NatedAddress dst, Set<NodeAndCounter> aliveNodes, Set<NodeAndCounter>  suspectedNodes, Set<NodeAndCounter>  deadNodes, NatedAddress relayedNode) {
 	        super(src, dst, new PongSwim("", aliveNodes, suspectedNodes, deadNodes, relayedNode));
 	       // log.info("IN PIGGY {}",this.getContent().aliveNodes.size());
 	   }
 
 
+	   public PiggyPong(NatedAddress src, NatedAddress dst, Set<NodeAndCounter> aliveNodes, Set<NodeAndCounter>  suspectedNodes, Set<NodeAndCounter>  deadNodes, NatedAddress relayedNode, int seq) {
+	        super(src, dst, new PongSwim("", aliveNodes, suspectedNodes, deadNodes, relayedNode, seq));
+	   }
 	    private PiggyPong(Header<NatedAddress> header, PongSwim content) {
 	        super(header, content);
 	    }
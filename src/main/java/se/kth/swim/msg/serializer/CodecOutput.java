@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.msg.serializer;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Primitive writes shared by the SWIM codec. Writes either go to a buffer or,
+ * when there is no buffer, only count the bytes they would take.
+ */
+class CodecOutput {
+
+    private final ByteBuffer buf;
+    private int size;
+
+    CodecOutput(ByteBuffer buf) {
+        this.buf = buf;
+        this.size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void writeByte(int value) {
+        if (buf != null) {
+            buf.put((byte) value);
+        }
+        size++;
+    }
+
+    void writeBytes(byte[] value) {
+        if (buf != null) {
+            buf.put(value);
+        }
+        size += value.length;
+    }
+
+    void writeShort(int value) {
+        if (buf != null) {
+            buf.putShort((short) value);
+        }
+        size += 2;
+    }
+
+    void writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    void writeSignedVarInt(int value) {
+        writeVarInt(zigZag(value));
+    }
+
+    static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    static int signedVarIntSize(int value) {
+        return varIntSize(zigZag(value));
+    }
+
+    static int ipSize(NatedAddress adr) {
+        return adr.getIp().getAddress().length;
+    }
+
+    static int readVarInt(ByteBuffer buf) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    static long readVarLong(ByteBuffer buf) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    static int readSignedVarInt(ByteBuffer buf) {
+        int value = readVarInt(buf);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static InetAddress readIp(ByteBuffer buf, boolean ipv6) {
+        byte[] ip = new byte[ipv6 ? 16 : 4];
+        buf.get(ip);
+        try {
+            return InetAddress.getByAddress(ip);
+        } catch (UnknownHostException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
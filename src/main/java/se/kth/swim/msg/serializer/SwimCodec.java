@@ -0,0 +1,515 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.msg.serializer;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import se.kth.swim.NodeAndCounter;
+import se.kth.swim.TrafficStats;
+import se.kth.swim.msg.PingSwim;
+import se.kth.swim.msg.PongSwim;
+import se.kth.swim.msg.Status;
+import se.kth.swim.msg.net.NetMsg;
+import se.kth.swim.msg.net.NetNack;
+import se.kth.swim.msg.net.NetPing;
+import se.kth.swim.msg.net.NetPingReq;
+import se.kth.swim.msg.net.NetStatus;
+import se.kth.swim.msg.net.NetStatusAck;
+import se.kth.swim.msg.net.PiggyPong;
+import se.kth.swim.msg.net.PiggyPongReq;
+import se.sics.kompics.network.Header;
+import se.sics.p2ptoolbox.util.network.NatType;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicHeader;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+/**
+ * Hand written binary encoding of the SWIM messages.
+ * <p>
+ * A message starts with its type and a dictionary of the parents of all nated
+ * addresses it contains, so that parents shared by many nodes are encoded
+ * once and referenced by index. Addresses are a flags byte, a zig-zag varint
+ * id, the ip and the port. Membership updates are sorted by id and encode the
+ * id as a delta from the previous update and the incarnation as is, with the
+ * member state packed in the flags byte.
+ * <p>
+ * Messages with relay or overlay headers are left to the default
+ * serialization.
+ */
+public class SwimCodec {
+
+    public static final byte PING = 1;
+    public static final byte PING_REQ = 2;
+    public static final byte PONG = 3;
+    public static final byte PONG_REQ = 4;
+    public static final byte STATUS = 5;
+    public static final byte NACK = 6;
+    public static final byte STATUS_ACK = 7;
+
+    //the two low bits of the address flags carry the member state of an update
+    private static final int STATE_MASK = 0x03;
+    private static final int ALIVE = 0;
+    private static final int SUSPECT = 1;
+    private static final int DEAD = 2;
+    private static final int FLAG_OPEN = 0x04;
+    private static final int FLAG_IPV6 = 0x08;
+
+    /**
+     * type, dictionary size, relayed flag, sequence number and update count
+     * of a pong
+     */
+    public static final int PONG_OVERHEAD = 11;
+
+    /**
+     * largest parent dictionary whose size and indexes are one byte varints,
+     * as {@link #addressSize} and {@link #PONG_OVERHEAD} count them
+     */
+    public static final int MAX_SMALL_DICTIONARY = 127;
+
+    private static final Comparator<Update> byId = new Comparator<Update>() {
+        public int compare(Update o1, Update o2) {
+            int id1 = o1.node.getId();
+            int id2 = o2.node.getId();
+            return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+        }
+    };
+
+    private SwimCodec() {
+    }
+
+    public static byte typeOf(NetMsg msg) {
+        if (msg instanceof NetPing) {
+            return PING;
+        } else if (msg instanceof NetPingReq) {
+            return PING_REQ;
+        } else if (msg instanceof PiggyPong) {
+            return PONG;
+        } else if (msg instanceof PiggyPongReq) {
+            return PONG_REQ;
+        } else if (msg instanceof NetStatus) {
+            return STATUS;
+        } else if (msg instanceof NetNack) {
+            return NACK;
+        } else if (msg instanceof NetStatusAck) {
+            return STATUS_ACK;
+        }
+        return 0;
+    }
+
+    public static boolean supports(NetMsg msg) {
+        return typeOf(msg) != 0 && msg.getHeader() instanceof BasicHeader;
+    }
+
+    public static int encodedSize(NetMsg msg) {
+        CodecOutput out = new CodecOutput(null);
+        write(msg, out);
+        return out.size();
+    }
+
+    public static byte[] encode(NetMsg msg) {
+        byte[] bytes = new byte[encodedSize(msg)];
+        encode(msg, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    public static void encode(NetMsg msg, ByteBuffer buf) {
+        write(msg, new CodecOutput(buf));
+    }
+
+    /**
+     * upper bound of the encoded size of one membership update, not counting
+     * the dictionary entries of its parents
+     */
+    public static int updateSize(NatedAddress node, int incarnation) {
+        return addressSize(node, 0) + CodecOutput.signedVarIntSize(incarnation);
+    }
+
+    /**
+     * encoded size of a parent in the dictionary of a message
+     */
+    public static int parentSize(NatedAddress parent) {
+        return 1 + CodecOutput.signedVarIntSize(parent.getId()) + CodecOutput.ipSize(parent) + 2;
+    }
+
+    /**
+     * encoded size of an address, not counting the dictionary entries of its
+     * parents. Parent indexes count one byte, which only holds in a message
+     * of at most {@link #MAX_SMALL_DICTIONARY} parents.
+     */
+    public static int addressSize(NatedAddress adr, int idBase) {
+        int size = 1 + CodecOutput.signedVarIntSize(adr.getId() - idBase) + CodecOutput.ipSize(adr) + 2;
+        if (!adr.isOpen()) {
+            size += CodecOutput.varIntSize(adr.getParents().size()) + adr.getParents().size();
+        }
+        return size;
+    }
+
+    /**
+     * Replacement used when a message goes through java serialization - the
+     * encoded form is serialized instead of the object graph.
+     */
+    public static Object replacement(NetMsg msg) {
+        return supports(msg) ? new Encoded(encode(msg)) : msg;
+    }
+
+    private static void write(NetMsg msg, CodecOutput out) {
+        byte type = typeOf(msg);
+        Header<NatedAddress> header = msg.getHeader();
+        if (type == 0 || !(header instanceof BasicHeader)) {
+            throw new IllegalArgumentException("cannot encode:" + msg);
+        }
+        Dictionary dict = new Dictionary();
+        dict.add(header.getSource());
+        dict.add(header.getDestination());
+
+        Update[] updates = null;
+        NatedAddress other = null;
+        Status status = null;
+        switch (type) {
+            case PING:
+            case STATUS_ACK:
+                break;
+            case PING_REQ:
+            case NACK:
+                other = ((PingSwim) msg.getContent()).nodeToPing;
+                break;
+            case PONG:
+                PiggyPong pong = (PiggyPong) msg;
+                other = pong.getContent().nodeRelayed;
+                updates = updates(pong.getAliveNodes(), pong.getSuspNodes(), pong.getDeadNodes());
+                break;
+            case PONG_REQ:
+                PiggyPongReq pongReq = (PiggyPongReq) msg;
+                other = pongReq.getContent().nodeRelayed;
+                updates = updates(pongReq.getAliveNodes(), pongReq.getSuspNodes(), pongReq.getDeadNodes());
+                break;
+            case STATUS:
+                status = ((NetStatus) msg).getContent();
+                dict.addAll(status.aliveNodes);
+                dict.addAll(status.suspectedNodes);
+                dict.addAll(status.deadNodes);
+                dict.addAll(status.removedNodes);
+                break;
+        }
+        if (other != null) {
+            dict.add(other);
+        }
+        if (updates != null) {
+            for (Update update : updates) {
+                dict.add(update.node);
+            }
+        }
+
+        out.writeByte(type);
+        dict.write(out);
+        writeAddress(out, 0, header.getSource(), 0, dict);
+        writeAddress(out, 0, header.getDestination(), 0, dict);
+        switch (type) {
+            case PING:
+                out.writeSignedVarInt(((NetPing) msg).getIncarnNbr());
+                out.writeVarInt(((NetPing) msg).getSeqNbr());
+                break;
+            case PING_REQ:
+            case NACK:
+                writeAddress(out, 0, other, 0, dict);
+                out.writeSignedVarInt(((PingSwim) msg.getContent()).incarnNbr);
+                out.writeVarInt(((PingSwim) msg.getContent()).seqNbr);
+                break;
+            case PONG:
+            case PONG_REQ:
+                out.writeByte(other == null ? 0 : 1);
+                if (other != null) {
+                    writeAddress(out, 0, other, 0, dict);
+                }
+                out.writeVarInt(((PongSwim) msg.getContent()).seqNbr);
+                writeUpdates(out, updates, dict);
+                break;
+            case STATUS:
+                out.writeVarInt(status.receivedPings);
+                out.writeByte(status.full ? 1 : 0);
+                out.writeSignedVarInt(status.seq);
+                out.writeSignedVarInt(status.baseSeq);
+                writeAddresses(out, status.aliveNodes, dict);
+                writeAddresses(out, status.suspectedNodes, dict);
+                writeAddresses(out, status.deadNodes, dict);
+                writeAddresses(out, status.removedNodes, dict);
+                for (long counter : status.traffic.toArray()) {
+                    out.writeVarLong(counter);
+                }
+                break;
+            case STATUS_ACK:
+                out.writeSignedVarInt(((NetStatusAck) msg).getSeq());
+                break;
+        }
+    }
+
+    public static NetMsg decode(ByteBuffer buf) {
+        byte type = buf.get();
+        List<NatedAddress> dict = readDictionary(buf);
+        NatedAddress src = readAddress(buf, buf.get(), 0, dict);
+        NatedAddress dst = readAddress(buf, buf.get(), 0, dict);
+        switch (type) {
+            case PING:
+                int pingIncarnation = CodecOutput.readSignedVarInt(buf);
+                return new NetPing(src, dst, pingIncarnation, CodecOutput.readVarInt(buf));
+            case PING_REQ:
+                NatedAddress toPing = readAddress(buf, buf.get(), 0, dict);
+                int reqIncarnation = CodecOutput.readSignedVarInt(buf);
+                return new NetPingReq(src, dst, toPing, reqIncarnation, CodecOutput.readVarInt(buf));
+            case NACK:
+                NatedAddress nacked = readAddress(buf, buf.get(), 0, dict);
+                int nackIncarnation = CodecOutput.readSignedVarInt(buf);
+                return new NetNack(src, dst, nacked, nackIncarnation, CodecOutput.readVarInt(buf));
+            case PONG:
+            case PONG_REQ:
+                NatedAddress relayed = null;
+                if (buf.get() != 0) {
+                    relayed = readAddress(buf, buf.get(), 0, dict);
+                }
+                int seq = CodecOutput.readVarInt(buf);
+                HashSet<NodeAndCounter> alive = new HashSet<NodeAndCounter>();
+                HashSet<NodeAndCounter> suspected = new HashSet<NodeAndCounter>();
+                HashSet<NodeAndCounter> dead = new HashSet<NodeAndCounter>();
+                readUpdates(buf, dict, alive, suspected, dead);
+                if (type == PONG) {
+                    return new PiggyPong(src, dst, alive, suspected, dead, relayed, seq);
+                }
+                return new PiggyPongReq(src, dst, alive, suspected, dead, relayed, seq);
+            case STATUS:
+                int receivedPings = CodecOutput.readVarInt(buf);
+                boolean full = buf.get() != 0;
+                int statusSeq = CodecOutput.readSignedVarInt(buf);
+                int baseSeq = CodecOutput.readSignedVarInt(buf);
+                Set<NatedAddress> aliveNodes = readAddresses(buf, dict);
+                Set<NatedAddress> suspectedNodes = readAddresses(buf, dict);
+                Set<NatedAddress> deadNodes = readAddresses(buf, dict);
+                Set<NatedAddress> removedNodes = readAddresses(buf, dict);
+                long[] counters = new long[4 * TrafficStats.Kind.values().length];
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] = CodecOutput.readVarLong(buf);
+                }
+                return new NetStatus(src, dst, new Status(receivedPings, statusSeq, baseSeq, full,
+                        aliveNodes, suspectedNodes, deadNodes, removedNodes, new TrafficStats(counters)));
+            case STATUS_ACK:
+                return new NetStatusAck(src, dst, CodecOutput.readSignedVarInt(buf));
+            default:
+                throw new IllegalArgumentException("unknown swim message type:" + type);
+        }
+    }
+
+    private static Update[] updates(Set<NodeAndCounter> alive, Set<NodeAndCounter> suspected, Set<NodeAndCounter> dead) {
+        Update[] updates = new Update[alive.size() + suspected.size() + dead.size()];
+        int i = 0;
+        for (NodeAndCounter nc : alive) {
+            updates[i++] = new Update(nc.getNode(), nc.getCounter(), ALIVE);
+        }
+        for (NodeAndCounter nc : suspected) {
+            updates[i++] = new Update(nc.getNode(), nc.getCounter(), SUSPECT);
+        }
+        for (NodeAndCounter nc : dead) {
+            updates[i++] = new Update(nc.getNode(), nc.getCounter(), DEAD);
+        }
+        Arrays.sort(updates, byId);
+        return updates;
+    }
+
+    private static void writeUpdates(CodecOutput out, Update[] updates, Dictionary dict) {
+        out.writeVarInt(updates.length);
+        int prevId = 0;
+        for (Update update : updates) {
+            writeAddress(out, update.state, update.node, prevId, dict);
+            //incarnations of unrelated nodes, a delta would not be smaller
+            out.writeSignedVarInt(update.incarnation);
+            prevId = update.node.getId();
+        }
+    }
+
+    private static void readUpdates(ByteBuffer buf, List<NatedAddress> dict,
+            Set<NodeAndCounter> alive, Set<NodeAndCounter> suspected, Set<NodeAndCounter> dead) {
+        int size = CodecOutput.readVarInt(buf);
+        int prevId = 0;
+        for (int i = 0; i < size; i++) {
+            int flags = buf.get();
+            NatedAddress node = readAddress(buf, flags, prevId, dict);
+            int incarnation = CodecOutput.readSignedVarInt(buf);
+            NodeAndCounter update = new NodeAndCounter(node, incarnation);
+            switch (flags & STATE_MASK) {
+                case ALIVE:
+                    alive.add(update);
+                    break;
+                case SUSPECT:
+                    suspected.add(update);
+                    break;
+                default:
+                    dead.add(update);
+            }
+            prevId = node.getId();
+        }
+    }
+
+    private static void writeAddresses(CodecOutput out, Set<NatedAddress> addresses, Dictionary dict) {
+        NatedAddress[] sorted = addresses.toArray(new NatedAddress[addresses.size()]);
+        Arrays.sort(sorted, new Comparator<NatedAddress>() {
+            public int compare(NatedAddress o1, NatedAddress o2) {
+                return o1.getId().compareTo(o2.getId());
+            }
+        });
+        out.writeVarInt(sorted.length);
+        int prevId = 0;
+        for (NatedAddress adr : sorted) {
+            writeAddress(out, 0, adr, prevId, dict);
+            prevId = adr.getId();
+        }
+    }
+
+    private static Set<NatedAddress> readAddresses(ByteBuffer buf, List<NatedAddress> dict) {
+        int size = CodecOutput.readVarInt(buf);
+        Set<NatedAddress> addresses = new HashSet<NatedAddress>();
+        int prevId = 0;
+        for (int i = 0; i < size; i++) {
+            NatedAddress adr = readAddress(buf, buf.get(), prevId, dict);
+            addresses.add(adr);
+            prevId = adr.getId();
+        }
+        return addresses;
+    }
+
+    private static void writeAddress(CodecOutput out, int flags, NatedAddress adr, int idBase, Dictionary dict) {
+        byte[] ip = adr.getIp().getAddress();
+        flags |= (adr.isOpen() ? FLAG_OPEN : 0) | (ip.length == 16 ? FLAG_IPV6 : 0);
+        out.writeByte(flags);
+        out.writeSignedVarInt(adr.getId() - idBase);
+        out.writeBytes(ip);
+        out.writeShort(adr.getPort());
+        if (!adr.isOpen()) {
+            out.writeVarInt(adr.getParents().size());
+            for (NatedAddress parent : adr.getParents()) {
+                out.writeVarInt(dict.indexOf(parent));
+            }
+        }
+    }
+
+    private static NatedAddress readAddress(ByteBuffer buf, int flags, int idBase, List<NatedAddress> dict) {
+        int id = idBase + CodecOutput.readSignedVarInt(buf);
+        InetAddress ip = CodecOutput.readIp(buf, (flags & FLAG_IPV6) != 0);
+        int port = buf.getShort() & 0xFFFF;
+        BasicAddress base = new BasicAddress(ip, port, id);
+        if ((flags & FLAG_OPEN) != 0) {
+            return new BasicNatedAddress(base);
+        }
+        int nrParents = CodecOutput.readVarInt(buf);
+        Set<NatedAddress> parents = new HashSet<NatedAddress>();
+        for (int i = 0; i < nrParents; i++) {
+            parents.add(dict.get(CodecOutput.readVarInt(buf)));
+        }
+        return new BasicNatedAddress(base, NatType.NAT, parents);
+    }
+
+    private static List<NatedAddress> readDictionary(ByteBuffer buf) {
+        int size = CodecOutput.readVarInt(buf);
+        List<NatedAddress> dict = new ArrayList<NatedAddress>(size);
+        for (int i = 0; i < size; i++) {
+            dict.add(readAddress(buf, buf.get(), 0, dict));
+        }
+        return dict;
+    }
+
+    /**
+     * parents of the nated addresses of a message. Parents are open nodes,
+     * their own parents are not encoded.
+     */
+    private static class Dictionary {
+
+        private final List<NatedAddress> parents = new ArrayList<NatedAddress>();
+        private final HashMap<Integer, Integer> index = new HashMap<Integer, Integer>();
+
+        void add(NatedAddress adr) {
+            if (adr == null || adr.isOpen()) {
+                return;
+            }
+            for (NatedAddress parent : adr.getParents()) {
+                if (!index.containsKey(parent.getId())) {
+                    index.put(parent.getId(), parents.size());
+                    parents.add(parent);
+                }
+            }
+        }
+
+        void addAll(Set<NatedAddress> addresses) {
+            for (NatedAddress adr : addresses) {
+                add(adr);
+            }
+        }
+
+        int indexOf(NatedAddress parent) {
+            return index.get(parent.getId());
+        }
+
+        void write(CodecOutput out) {
+            out.writeVarInt(parents.size());
+            for (NatedAddress parent : parents) {
+                byte[] ip = parent.getIp().getAddress();
+                out.writeByte(FLAG_OPEN | (ip.length == 16 ? FLAG_IPV6 : 0));
+                out.writeSignedVarInt(parent.getId());
+                out.writeBytes(ip);
+                out.writeShort(parent.getPort());
+            }
+        }
+    }
+
+    private static class Update {
+
+        final NatedAddress node;
+        final int incarnation;
+        final int state;
+
+        Update(NatedAddress node, int incarnation, int state) {
+            this.node = node;
+            this.incarnation = incarnation;
+            this.state = state;
+        }
+    }
+
+    /**
+     * serialized form of a SWIM message
+     */
+    private static class Encoded implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final byte[] bytes;
+
+        Encoded(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            return decode(ByteBuffer.wrap(bytes));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.simulation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import se.kth.swim.aggregator.MetricsSink;
+
+/**
+ * Runs a parameter sweep of {@link SwimMain}, one JVM per simulation so that
+ * the static state of the simulator is never shared, as many at a time as
+ * there are cores.
+ * <p>
+ * Every option of SwimMain takes a comma separated list of values and the
+ * sweep is their cartesian product, e.g.
+ * {@code --nodes 1000,10000 --lambda 3,4 --seed 1,2,3} is 12 runs. The runner
+ * itself takes {@code --out} (directory of the results, default sweep),
+ * {@code --jobs} (parallel runs) and {@code --xmx} (heap of each run). The
+ * output directory gets the log and metrics of each run and summary.csv with
+ * the parameters, exit code, duration and last metrics of every run.
+ */
+public class BatchRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchRunner.class);
+    private static final String[] RUNNER_OPTIONS = {"out", "jobs", "xmx"};
+
+    public static void main(String[] args) throws Exception {
+        String[] known = new String[SwimMain.OPTIONS.length + RUNNER_OPTIONS.length];
+        System.arraycopy(SwimMain.OPTIONS, 0, known, 0, SwimMain.OPTIONS.length);
+        System.arraycopy(RUNNER_OPTIONS, 0, known, SwimMain.OPTIONS.length, RUNNER_OPTIONS.length);
+        SimulationArgs options = SimulationArgs.parse(args, known);
+
+        LinkedHashMap<String, String[]> axes = new LinkedHashMap<String, String[]>();
+        for (Map.Entry<String, String> option : options.asMap().entrySet()) {
+            if (!Arrays.asList(RUNNER_OPTIONS).contains(option.getKey())) {
+                axes.put(option.getKey(), option.getValue().split(","));
+            }
+        }
+        File out = new File(options.get("out", "sweep"));
+        if (!out.isDirectory() && !out.mkdirs()) {
+            throw new IOException("cannot create " + out);
+        }
+        int jobs = options.getInt("jobs", Runtime.getRuntime().availableProcessors());
+        String xmx = options.get("xmx", null);
+
+        List<Map<String, String>> grid = grid(axes);
+        log.info("{} runs on {} jobs in {}", new Object[]{grid.size(), jobs, out});
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        List<Future<Run>> runs = new ArrayList<Future<Run>>();
+        for (int i = 0; i < grid.size(); i++) {
+            runs.add(pool.submit(new Run(i, grid.get(i), out, xmx)));
+        }
+        pool.shutdown();
+
+        int failed = 0;
+        PrintWriter summary = new PrintWriter(new FileWriter(new File(out, "summary.csv")));
+        try {
+            StringBuilder header = new StringBuilder("run");
+            for (String name : axes.keySet()) {
+                header.append(',').append(name);
+            }
+            summary.println(header.append(",exit,seconds,").append(MetricsSink.HEADER));
+            for (Future<Run> future : runs) {
+                Run run = future.get();
+                if (run.exitCode != 0) {
+                    failed++;
+                }
+                StringBuilder row = new StringBuilder().append(run.index);
+                for (String value : run.params.values()) {
+                    row.append(',').append(value);
+                }
+                row.append(',').append(run.exitCode).append(',').append(run.seconds).append(',');
+                summary.println(row.append(run.lastMetrics == null ? "" : run.lastMetrics));
+                summary.flush();
+                log.info("run {} of {} exit:{} in {}s", new Object[]{run.index + 1, grid.size(), run.exitCode, run.seconds});
+            }
+        } finally {
+            summary.close();
+        }
+        log.info("sweep done, {} of {} runs failed", new Object[]{failed, grid.size()});
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * @return every combination of the values of the axes, the last axis
+     * varying fastest
+     */
+    static List<Map<String, String>> grid(LinkedHashMap<String, String[]> axes) {
+        List<Map<String, String>> grid = new ArrayList<Map<String, String>>();
+        grid.add(new LinkedHashMap<String, String>());
+        for (Map.Entry<String, String[]> axis : axes.entrySet()) {
+            List<Map<String, String>> next = new ArrayList<Map<String, String>>();
+            for (Map<String, String> point : grid) {
+                for (String value : axis.getValue()) {
+                    Map<String, String> extended = new LinkedHashMap<String, String>(point);
+                    extended.put(axis.getKey(), value.trim());
+                    next.add(extended);
+                }
+            }
+            grid = next;
+        }
+        return grid;
+    }
+
+    private static class Run implements Callable<Run> {
+
+        private final int index;
+        private final Map<String, String> params;
+        private final File out;
+        private final String xmx;
+        private int exitCode;
+        private long seconds;
+        private String lastMetrics;
+
+        Run(int index, Map<String, String> params, File out, String xmx) {
+            this.index = index;
+            this.params = params;
+            this.out = out;
+            this.xmx = xmx;
+        }
+
+        public Run call() throws Exception {
+            File metrics = new File(out, "run-" + index + ".csv");
+            //the sink appends, a previous sweep must not leak in
+            metrics.delete();
+            List<String> command = new ArrayList<String>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            if (xmx != null) {
+                command.add("-Xmx" + xmx);
+            }
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(SwimMain.class.getName());
+            for (Map.Entry<String, String> param : params.entrySet()) {
+                command.add("--" + param.getKey());
+                command.add(param.getValue());
+            }
+            command.add("--metrics");
+            command.add(metrics.getPath());
+
+            long start = System.currentTimeMillis();
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            OutputStream runLog = new FileOutputStream(new File(out, "run-" + index + ".log"));
+            try {
+                copy(process.getInputStream(), runLog);
+            } finally {
+                runLog.close();
+            }
+            exitCode = process.waitFor();
+            seconds = (System.currentTimeMillis() - start) / 1000;
+            lastMetrics = lastLine(metrics);
+            return this;
+        }
+
+        private static void copy(InputStream in, OutputStream out) throws IOException {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+        }
+
+        private static String lastLine(File file) throws IOException {
+            if (!file.exists()) {
+                return null;
+            }
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                String last = null;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.equals(MetricsSink.HEADER)) {
+                        last = line;
+                    }
+                }
+                return last;
+            } finally {
+                reader.close();
+            }
+        }
+    }
+}
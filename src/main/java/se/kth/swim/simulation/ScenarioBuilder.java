@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.simulation;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.javatuples.Pair;
+
+import se.sics.p2ptoolbox.simulator.cmd.impl.ChangeNetworkModelCmd;
+import se.sics.p2ptoolbox.simulator.core.network.NetworkModel;
+import se.sics.p2ptoolbox.simulator.core.network.impl.DeadLinkNetworkModel;
+import se.sics.p2ptoolbox.simulator.core.network.impl.DisconnectedNodesNetworkModel;
+import se.sics.p2ptoolbox.simulator.core.network.impl.UniformRandomModel;
+import se.sics.p2ptoolbox.simulator.dsl.SimulationScenario;
+import se.sics.p2ptoolbox.simulator.dsl.adaptor.Operation1;
+import se.sics.p2ptoolbox.simulator.dsl.distribution.ConstantDistribution;
+import se.sics.p2ptoolbox.simulator.dsl.distribution.Distribution;
+
+/**
+ * Builds large scenarios with stochastic processes instead of fixed node
+ * lists. The run goes through these phases, one after the other:
+ * <ol>
+ * <li>boot - the nodes join with exponential inter-arrival times</li>
+ * <li>churn - fresh nodes join and random live nodes leave, each at half the
+ * churn rate</li>
+ * <li>failures - a fraction of the live nodes crash</li>
+ * <li>partition - a fraction of the live nodes is cut off, then the network
+ * heals</li>
+ * </ol>
+ * Each phase starts once the system settled from the previous one. Nodes are
+ * picked at random among the live ones with the scenario seed, so a run is
+ * reproducible.
+ */
+public class ScenarioBuilder implements Serializable {
+
+    public static enum Partition {
+
+        NONE,
+        //the partitioned nodes can neither send nor receive
+        ISOLATE,
+        //the partitioned nodes lose their links to some random live nodes
+        DEAD_LINKS
+    }
+
+    //dead links of each partitioned node, in both directions
+    private static final int DEAD_LINKS_PER_NODE = 10;
+
+    private final long seed;
+    private int nodes = 100;
+    private double churnRate = 0;
+    private long churnDuration = 60000;
+    private double failureFraction = 0;
+    private long failureDuration = 10000;
+    private double natRatio = 0.5;
+    private Partition partition = Partition.NONE;
+    private double partitionFraction = 0.1;
+    private long partitionDuration = 30000;
+    private long bootInterArrival = 20;
+    private long settleTime = 30000;
+
+    ScenarioBuilder(long seed) {
+        this.seed = seed;
+    }
+
+    public ScenarioBuilder nodes(int nodes) {
+        this.nodes = nodes;
+        return this;
+    }
+
+    /**
+     * @param churnRate joins and leaves per second
+     * @param duration ms of churn, 0 for none
+     */
+    public ScenarioBuilder churn(double churnRate, long duration) {
+        this.churnRate = churnRate;
+        this.churnDuration = duration;
+        return this;
+    }
+
+    /**
+     * The number of crashes is fixed when the scenario is built, from the
+     * nodes live when the failures start. Churn removes as many nodes as it
+     * joins, so that is the boot size.
+     *
+     * @param fraction of the live nodes that crash
+     * @param duration ms over which they crash
+     */
+    public ScenarioBuilder failures(double fraction, long duration) {
+        this.failureFraction = fraction;
+        this.failureDuration = duration;
+        return this;
+    }
+
+    public ScenarioBuilder natRatio(double natRatio) {
+        this.natRatio = natRatio;
+        return this;
+    }
+
+    /**
+     * @param fraction of the live nodes partitioned
+     * @param duration ms before the network heals
+     */
+    public ScenarioBuilder partition(Partition shape, double fraction, long duration) {
+        this.partition = shape;
+        this.partitionFraction = fraction;
+        this.partitionDuration = duration;
+        return this;
+    }
+
+    /**
+     * @param mean ms between two joins while booting
+     */
+    public ScenarioBuilder bootInterArrival(long mean) {
+        this.bootInterArrival = mean;
+        return this;
+    }
+
+    /**
+     * @param settleTime ms left between the phases for the protocol to converge
+     */
+    public ScenarioBuilder settleTime(long settleTime) {
+        this.settleTime = settleTime;
+        return this;
+    }
+
+    public SimulationScenario build() {
+        if (failureFraction < 0 || failureFraction >= 1 || natRatio < 0 || natRatio > 1
+                || partitionFraction < 0 || partitionFraction >= 1) {
+            throw new IllegalArgumentException("fractions must be within [0, 1)");
+        }
+        SwimScenario.setSeed(seed);
+        final LiveNodes live = new LiveNodes(new Random(seed));
+        final Operation1 startNodeOp = SwimScenario.startNodeOp(natRatio);
+        final int churnEvents = (int) (churnRate * churnDuration / 2000);
+        final long churnInterArrival = churnEvents == 0 ? 1 : churnDuration / churnEvents;
+        //live nodes once boot and churn are over, churn leaves as many as it joins
+        final int liveAtFailures = nodes;
+        final int failures = (int) (failureFraction * liveAtFailures);
+        final long failureInterArrival = failures == 0 ? 1 : failureDuration / failures;
+        final Operation1<ChangeNetworkModelCmd, Integer> partitionOp = partitionOp(live);
+
+        SimulationScenario scen = new SimulationScenario() {
+            {
+                StochasticProcess startAggregator = new StochasticProcess() {
+                    {
+                        eventInterArrivalTime(constant(1000));
+                        raise(1, SwimScenario.startAggregatorOp, new ConstantDistribution(Integer.class, 0));
+                    }
+                };
+
+                StochasticProcess boot = new StochasticProcess() {
+                    {
+                        eventInterArrivalTime(exponential(bootInterArrival));
+                        raise(nodes, startNodeOp, live.joining());
+                    }
+                };
+                startAggregator.start();
+                boot.startAfterTerminationOf(1000, startAggregator);
+                StochasticProcess last = boot;
+
+                if (churnEvents > 0) {
+                    StochasticProcess joins = new StochasticProcess() {
+                        {
+                            eventInterArrivalTime(exponential(churnInterArrival));
+                            raise(churnEvents, startNodeOp, live.joining());
+                        }
+                    };
+                    StochasticProcess leaves = new StochasticProcess() {
+                        {
+                            eventInterArrivalTime(exponential(churnInterArrival));
+                            raise(churnEvents, SwimScenario.killNodeOp, live.leaving());
+                        }
+                    };
+                    joins.startAfterTerminationOf(settleTime, last);
+                    leaves.startAtSameTimeWith(joins);
+                    last = leaves;
+                }
+
+                if (failures > 0) {
+                    StochasticProcess crashes = new StochasticProcess() {
+                        {
+                            eventInterArrivalTime(exponential(failureInterArrival));
+                            raise(failures, SwimScenario.killNodeOp, live.leaving());
+                        }
+                    };
+                    crashes.startAfterTerminationOf(settleTime, last);
+                    last = crashes;
+                }
+
+                if (partition != Partition.NONE) {
+                    StochasticProcess split = new StochasticProcess() {
+                        {
+                            eventInterArrivalTime(constant(1000));
+                            raise(1, partitionOp, new ConstantDistribution(Integer.class, 1));
+                        }
+                    };
+                    StochasticProcess heal = new StochasticProcess() {
+                        {
+                            eventInterArrivalTime(constant(1000));
+                            raise(1, SwimScenario.reconnectedNodesNMOp, new ConstantDistribution(Integer.class, 1));
+                        }
+                    };
+                    split.startAfterTerminationOf(settleTime, last);
+                    heal.startAfterTerminationOf(partitionDuration, split);
+                    last = heal;
+                }
+
+                StochasticProcess fetchSimulationResult = new StochasticProcess() {
+                    {
+                        eventInterArrivalTime(constant(1000));
+                        raise(1, SwimScenario.simulationResult);
+                    }
+                };
+                fetchSimulationResult.startAfterTerminationOf(settleTime, last);
+                terminateAfterTerminationOf(1000, fetchSimulationResult);
+            }
+        };
+        scen.setSeed(seed);
+        return scen;
+    }
+
+    private Operation1<ChangeNetworkModelCmd, Integer> partitionOp(final LiveNodes live) {
+        final Partition shape = partition;
+        final double fraction = partitionFraction;
+        return new Operation1<ChangeNetworkModelCmd, Integer>() {
+
+            public ChangeNetworkModelCmd generate(Integer setIndex) {
+                NetworkModel baseNetworkModel = new UniformRandomModel(50, 500);
+                int[] cut = live.pick((int) (fraction * live.size()));
+                if (shape == Partition.ISOLATE) {
+                    Set<Integer> disconnected = new HashSet<Integer>();
+                    for (int node : cut) {
+                        disconnected.add(node);
+                    }
+                    return new ChangeNetworkModelCmd(new DisconnectedNodesNetworkModel(setIndex, baseNetworkModel, disconnected));
+                }
+                Set<Pair<Integer, Integer>> deadLinks = new HashSet<Pair<Integer, Integer>>();
+                for (int node : cut) {
+                    for (int peer : live.pick(DEAD_LINKS_PER_NODE)) {
+                        if (peer != node) {
+                            deadLinks.add(Pair.with(node, peer));
+                            deadLinks.add(Pair.with(peer, node));
+                        }
+                    }
+                }
+                return new ChangeNetworkModelCmd(new DeadLinkNetworkModel(setIndex, baseNetworkModel, deadLinks));
+            }
+        };
+    }
+
+    /**
+     * Ids of the live nodes, handed out by the distributions of the join and
+     * leave processes as their events are generated.
+     */
+    static class LiveNodes implements Serializable {
+
+        private final Random rand;
+        private int[] ids = new int[1024];
+        private int size = 0;
+        private int nextId = 0;
+
+        LiveNodes(Random rand) {
+            this.rand = rand;
+        }
+
+        int join() {
+            if (size == ids.length) {
+                int[] grown = new int[2 * ids.length];
+                System.arraycopy(ids, 0, grown, 0, size);
+                ids = grown;
+            }
+            ids[size++] = nextId;
+            return nextId++;
+        }
+
+        int leave() {
+            if (size == 0) {
+                throw new IllegalStateException("no live node left to remove");
+            }
+            int i = rand.nextInt(size);
+            int id = ids[i];
+            ids[i] = ids[--size];
+            return id;
+        }
+
+        /**
+         * @return count distinct live nodes chosen at random, or all of them
+         */
+        int[] pick(int count) {
+            count = Math.min(count, size);
+            //partial shuffle of the live ids, order does not matter
+            for (int i = 0; i < count; i++) {
+                int j = i + rand.nextInt(size - i);
+                int tmp = ids[i];
+                ids[i] = ids[j];
+                ids[j] = tmp;
+            }
+            int[] picked = new int[count];
+            System.arraycopy(ids, 0, picked, 0, count);
+            return picked;
+        }
+
+        int size() {
+            return size;
+        }
+
+        Distribution<Integer> joining() {
+            return new Distribution<Integer>(Distribution.Type.OTHER, Integer.class) {
+
+                public Integer draw() {
+                    return join();
+                }
+            };
+        }
+
+        Distribution<Integer> leaving() {
+            return new Distribution<Integer>(Distribution.Type.OTHER, Integer.class) {
+
+                public Integer draw() {
+                    return leave();
+                }
+            };
+        }
+    }
+}
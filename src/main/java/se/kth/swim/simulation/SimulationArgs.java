@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.simulation;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command line options of the form {@code --name value}, in the order given.
+ */
+public class SimulationArgs {
+
+    private final LinkedHashMap<String, String> values = new LinkedHashMap<String, String>();
+
+    /**
+     * @param known names of the accepted options, without the dashes
+     */
+    public static SimulationArgs parse(String[] args, String... known) {
+        Set<String> names = new HashSet<String>(Arrays.asList(known));
+        SimulationArgs parsed = new SimulationArgs();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("expected --name value, got:" + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (!names.contains(name)) {
+                throw new IllegalArgumentException("unknown option:" + args[i] + " expected one of:" + names);
+            }
+            parsed.values.put(name, args[i + 1]);
+        }
+        return parsed;
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    public String get(String name, String def) {
+        String value = values.get(name);
+        return value == null ? def : value;
+    }
+
+    public int getInt(String name, int def) {
+        String value = values.get(name);
+        return value == null ? def : Integer.parseInt(value);
+    }
+
+    public long getLong(String name, long def) {
+        String value = values.get(name);
+        return value == null ? def : Long.parseLong(value);
+    }
+
+    public double getDouble(String name, double def) {
+        String value = values.get(name);
+        return value == null ? def : Double.parseDouble(value);
+    }
+
+    public Map<String, String> asMap() {
+        return values;
+    }
+}
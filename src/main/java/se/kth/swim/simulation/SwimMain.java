@@ -18,11 +18,15 @@
  */
 package se.kth.swim.simulation;
 
+import java.io.File;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import org.junit.Assert;
+import se.kth.swim.SwimConfig;
+import se.kth.swim.croupier.CroupierConfig;
 import se.sics.kompics.Kompics;
 import se.sics.kompics.simulation.SimulatorScheduler;
+import se.sics.p2ptoolbox.simulator.dsl.SimulationScenario;
 import se.sics.p2ptoolbox.simulator.run.LauncherComp;
 import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
 import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
@@ -33,6 +37,16 @@ import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
  */
 public class SwimMain {
 
+    /**
+     * options of a run, without arguments the simple boot scenario runs
+     */
+    public static final String[] OPTIONS = {
+        "seed", "nodes", "churn-rate", "churn-duration", "failures", "failure-duration", "nat-ratio",
+        "partition", "partition-fraction", "partition-duration", "boot-interval", "settle-time",
+        "lambda", "max-message-size", "probe-period", "suspicion-min", "suspicion-max",
+        "view-size", "shuffle-size", "shuffle-period", "metrics"
+    };
+
     public static void main(String[] args) {
         LauncherComp.scheduler = new SimulatorScheduler(); 
         /**
@@ -42,7 +56,8 @@ public class SwimMain {
          * It can be the same seed or can be customized, eg: newSeed = a * oldSeed + b
          * When testing you code, you might want to run the scenario with different seeds.
          */
-        LauncherComp.scenario = SwimScenario.simpleBoot(1234L);
+        SimulationArgs options = SimulationArgs.parse(args, OPTIONS);
+        LauncherComp.scenario = options.isEmpty() ? SwimScenario.simpleBoot(1234L) : scenario(options);
         //
         try {
             LauncherComp.simulatorClientAddress = new BasicNatedAddress(new BasicAddress(InetAddress.getByName("127.0.0.1"), 30000, -1));
@@ -60,4 +75,24 @@ public class SwimMain {
 
         Assert.assertEquals(null, SwimSimulationResult.failureCause);
     }
+
+    static SimulationScenario scenario(SimulationArgs options) {
+        SwimConfig swimConfig = new SwimConfig(options.getInt("lambda", 4), options.getInt("max-message-size", 1400),
+                options.getLong("probe-period", 1000), 8, options.getInt("suspicion-min", 1),
+                options.getInt("suspicion-max", 3), 3, 30000);
+        CroupierConfig croupierConfig = new CroupierConfig(options.getInt("view-size", 10),
+                options.getInt("shuffle-size", 5), options.getLong("shuffle-period", 2000), 1000);
+        String metrics = options.get("metrics", null);
+        SwimScenario.configure(swimConfig, croupierConfig, metrics == null ? null : new File(metrics));
+        return SwimScenario.builder(options.getLong("seed", 1234L))
+                .nodes(options.getInt("nodes", 100))
+                .churn(options.getDouble("churn-rate", 0), options.getLong("churn-duration", 60000))
+                .failures(options.getDouble("failures", 0), options.getLong("failure-duration", 10000))
+                .natRatio(options.getDouble("nat-ratio", 0.5))
+                .partition(ScenarioBuilder.Partition.valueOf(options.get("partition", "NONE")),
+                        options.getDouble("partition-fraction", 0.1), options.getLong("partition-duration", 30000))
+                .bootInterArrival(options.getLong("boot-interval", 20))
+                .settleTime(options.getLong("settle-time", 30000))
+                .build();
+    }
 }
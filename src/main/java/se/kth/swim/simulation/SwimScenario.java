@@ -19,18 +19,21 @@
 package se.kth.swim.simulation;
 
 import java.awt.List;
+import java.io.File;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import org.javatuples.Pair;
 
 import se.kth.swim.AggregatorComp;
 import se.kth.swim.HostComp;
+import se.kth.swim.SwimConfig;
 import se.kth.swim.croupier.CroupierConfig;
 import se.sics.kompics.network.Address;
 import se.sics.p2ptoolbox.simulator.cmd.OperationCmd;
@@ -62,6 +65,11 @@ public class SwimScenario {
     private static InetAddress localHost;
     
     private static CroupierConfig croupierConfig = new CroupierConfig(10, 5, 2000, 1000); 
+    //1400 bytes leaves room for IP/UDP headers in a 1500 bytes MTU
+    private static SwimConfig swimConfig = new SwimConfig(4, 1400);
+    //per cycle metrics of the aggregator, written every 10s of simulated time, null for none
+    private static File metricsFile = null;
+    private static long metricsFlushInterval = 10000;
 
     static {
         try {
@@ -125,7 +133,7 @@ public class SwimScenario {
 
                 public AggregatorComp.AggregatorInit getNodeComponentInit() {
                     aggregatorAddress = new BasicNatedAddress(new BasicAddress(localHost, 23456, nodeId));
-                    return new AggregatorComp.AggregatorInit(aggregatorAddress);
+                    return new AggregatorComp.AggregatorInit(aggregatorAddress, metricsFile, metricsFlushInterval);
                 }
 
                 public NatedAddress getAddress() {
@@ -159,7 +167,7 @@ public class SwimScenario {
                      * generators with same seed else they might behave the same
                      */
                     long nodeSeed = seed + nodeId;
-                    return new HostComp.HostInit(nodeAddress, bootstrapNodes, aggregatorServer, nodeSeed, croupierConfig);
+                    return new HostComp.HostInit(nodeAddress, bootstrapNodes, aggregatorServer, nodeSeed, croupierConfig, swimConfig);
                 }
 
                 public Integer getNodeId() {
@@ -178,6 +186,68 @@ public class SwimScenario {
         }
     };
 
+    /**
+     * starts nodes of which about natRatio are behind a nat, the choice is a
+     * function of the node id and the seed. A node without bootstrap nodes
+     * has no parents to relay for it and is always open.
+     */
+    static Operation1<StartNodeCmd, Integer> startNodeOp(final double natRatio) {
+        return new Operation1<StartNodeCmd, Integer>() {
+
+            public StartNodeCmd generate(final Integer nodeId) {
+                return new StartNodeCmd<HostComp, NatedAddress>() {
+                    private NatedAddress nodeAddress;
+
+                    public Class getNodeComponentDefinition() {
+                        return HostComp.class;
+                    }
+
+                    public HostComp.HostInit getNodeComponentInit(NatedAddress aggregatorServer, Set<NatedAddress> bootstrapNodes) {
+                        if (bootstrapNodes.isEmpty() || natDraw(nodeId) >= natRatio) {
+                            //open address
+                            nodeAddress = new BasicNatedAddress(new BasicAddress(localHost, 12345, nodeId));
+                        } else {
+                            //nated address
+                            nodeAddress = new BasicNatedAddress(new BasicAddress(localHost, 12345, nodeId), NatType.NAT, bootstrapNodes);
+                        }
+                        /**
+                         * we don't want all nodes to start their pseudo random
+                         * generators with same seed else they might behave the same
+                         */
+                        long nodeSeed = seed + nodeId;
+                        return new HostComp.HostInit(nodeAddress, bootstrapNodes, aggregatorServer, nodeSeed, croupierConfig, swimConfig);
+                    }
+
+                    public Integer getNodeId() {
+                        return nodeId;
+                    }
+
+                    public NatedAddress getAddress() {
+                        return nodeAddress;
+                    }
+
+                    public int bootstrapSize() {
+                        return 5;
+                    }
+
+                };
+            }
+        };
+    }
+
+    /**
+     * uniform in [0, 1) for a node id and the seed. Random seeded with
+     * consecutive ids gives strongly correlated first draws, so the id is
+     * mixed in with the splitmix64 finalizer instead.
+     */
+    static double natDraw(int nodeId) {
+        long z = new Random(seed).nextLong() ^ (nodeId * 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
     static Operation1<KillNodeCmd, Integer> killNodeOp = new Operation1<KillNodeCmd, Integer>() {
 
         public KillNodeCmd generate(final Integer nodeId) {
@@ -248,6 +318,27 @@ public class SwimScenario {
     //So be carefull for null pointer exception if you draw more times than elements
     //check se.sics.p2ptoolbox.simulator.dsl.distribution for more distributions
     //you can implement your own - by extending Distribution
+    /**
+     * scenario of the given size and churn, see {@link ScenarioBuilder}
+     */
+    public static ScenarioBuilder builder(long seed) {
+        return new ScenarioBuilder(seed);
+    }
+
+    /**
+     * replaces the configuration of the nodes and the aggregator metrics file
+     * of the scenarios built afterwards, a null file writes no metrics
+     */
+    public static void configure(SwimConfig swim, CroupierConfig croupier, File metrics) {
+        swimConfig = swim;
+        croupierConfig = croupier;
+        metricsFile = metrics;
+    }
+
+    static void setSeed(long seed) {
+        SwimScenario.seed = seed;
+    }
+
     public static SimulationScenario simpleBoot(final long seed) {
         SwimScenario.seed = seed;
         SimulationScenario scen = new SimulationScenario() {
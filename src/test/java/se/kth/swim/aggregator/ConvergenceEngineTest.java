@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.aggregator;
+
+import java.net.InetAddress;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import se.kth.swim.TrafficStats;
+import se.kth.swim.msg.Status;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class ConvergenceEngineTest {
+
+    private static final long THRESHOLD = 3000;
+
+    @Test
+    public void silentNodeFailsThenIsDetected() throws Exception {
+        ConvergenceEngine engine = new ConvergenceEngine(THRESHOLD);
+        engine.observe(1, full(nodes(2, 3), nodes()), 0);
+        engine.observe(2, full(nodes(1, 3), nodes()), 0);
+        engine.observe(3, full(nodes(1, 2), nodes()), 0);
+        engine.tick(1000);
+        Assert.assertEquals(3, engine.getLiveNodes());
+        Assert.assertEquals(1.0, engine.getConvergence(), 1e-9);
+
+        engine.observe(1, full(nodes(2, 3), nodes()), 2000);
+        engine.observe(2, full(nodes(1, 3), nodes()), 2000);
+        engine.tick(4000);
+        //3 stopped reporting, the others still see it
+        Assert.assertEquals(2, engine.getLiveNodes());
+        Assert.assertEquals(1, engine.getFailedNodes());
+        Assert.assertEquals(2, engine.getFalseNegatives());
+        Assert.assertEquals(0.5, engine.getConvergence(), 1e-9);
+
+        engine.observe(1, full(nodes(2), nodes(3)), 4500);
+        Assert.assertEquals(1, engine.getDetection().getCount());
+        Assert.assertEquals(4500, engine.getDetection().getMax());
+        Assert.assertEquals(0, engine.getDissemination().getCount());
+        engine.observe(2, full(nodes(1), nodes(3)), 5000);
+        Assert.assertEquals(5000, engine.getDissemination().getMax());
+
+        engine.tick(5500);
+        Assert.assertEquals(1.0, engine.getConvergence(), 1e-9);
+        Assert.assertEquals(0, engine.getFalseNegatives());
+        Assert.assertEquals(0, engine.getFalsePositives());
+        Assert.assertEquals(7, engine.getReports());
+    }
+
+    @Test
+    public void liveNodeDeclaredDeadIsFalsePositive() throws Exception {
+        ConvergenceEngine engine = new ConvergenceEngine(THRESHOLD);
+        engine.observe(1, full(nodes(), nodes(2)), 0);
+        engine.observe(2, full(nodes(1), nodes()), 0);
+        engine.tick(1000);
+        Assert.assertEquals(1, engine.getFalsePositives());
+        Assert.assertEquals(0.5, engine.getConvergence(), 1e-9);
+        //detection is only measured for failed nodes
+        Assert.assertEquals(0, engine.getDetection().getCount());
+    }
+
+    @Test
+    public void failedNodeReportingAgainRejoins() throws Exception {
+        ConvergenceEngine engine = new ConvergenceEngine(THRESHOLD);
+        engine.observe(1, full(nodes(2), nodes()), 0);
+        engine.observe(2, full(nodes(1), nodes()), 0);
+        engine.observe(1, full(nodes(2), nodes()), 3000);
+        engine.tick(4000);
+        Assert.assertEquals(1, engine.getFailedNodes());
+        engine.observe(2, full(nodes(1), nodes()), 4500);
+        engine.tick(5000);
+        Assert.assertEquals(2, engine.getLiveNodes());
+        Assert.assertEquals(0, engine.getFailedNodes());
+        Assert.assertEquals(1.0, engine.getConvergence(), 1e-9);
+    }
+
+    private static Status full(Set<NatedAddress> alive, Set<NatedAddress> dead) {
+        return new Status(0, 1, 0, true, alive, new HashSet<NatedAddress>(), dead, new HashSet<NatedAddress>(),
+                new TrafficStats());
+    }
+
+    private static Set<NatedAddress> nodes(int... ids) throws Exception {
+        Set<NatedAddress> nodes = new HashSet<NatedAddress>();
+        for (int id : ids) {
+            nodes.add(new BasicNatedAddress(new BasicAddress(InetAddress.getByName("193.10.64.1"), 10000 + id, id)));
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.aggregator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdBitSetTest {
+
+    @Test
+    public void addRemoveAndGrow() {
+        IdBitSet set = new IdBitSet(8);
+        Assert.assertTrue(set.add(3));
+        Assert.assertFalse(set.add(3));
+        Assert.assertTrue(set.add(1000));
+        Assert.assertTrue(set.contains(3));
+        Assert.assertTrue(set.contains(1000));
+        Assert.assertFalse(set.contains(999));
+        Assert.assertEquals(2, set.size());
+        Assert.assertTrue(set.remove(3));
+        Assert.assertFalse(set.remove(3));
+        Assert.assertFalse(set.remove(5000));
+        Assert.assertEquals(1, set.size());
+    }
+
+    @Test
+    public void andCountAndNext() {
+        IdBitSet a = new IdBitSet();
+        IdBitSet b = new IdBitSet(1024);
+        for (int id = 0; id < 200; id += 2) {
+            a.add(id);
+        }
+        for (int id = 0; id < 600; id += 3) {
+            b.add(id);
+        }
+        //multiples of 6 below 200
+        Assert.assertEquals(34, a.andCount(b));
+        Assert.assertEquals(34, b.andCount(a));
+        Assert.assertEquals(64, a.next(63));
+        Assert.assertEquals(198, a.next(198));
+        Assert.assertEquals(-1, a.next(199));
+        Assert.assertEquals(0, a.next(-5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeIdRejected() {
+        new IdBitSet().add(-1);
+    }
+
+    @Test
+    public void negativeIdNeverContained() {
+        IdBitSet set = new IdBitSet();
+        set.add(63);
+        Assert.assertFalse(set.contains(-1));
+        Assert.assertFalse(set.remove(-1));
+        Assert.assertTrue(set.contains(63));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.aggregator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(-1, histogram.percentile(50));
+        Assert.assertEquals(-1, histogram.getMin());
+        Assert.assertEquals(-1, histogram.getMax());
+        Assert.assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 0; value < 10; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+        Assert.assertEquals(0, histogram.getMin());
+        Assert.assertEquals(9, histogram.getMax());
+        Assert.assertEquals(45 / 11.0, histogram.getMean(), 1e-9);
+        Assert.assertEquals(4, histogram.percentile(50));
+        Assert.assertEquals(9, histogram.percentile(100));
+    }
+
+    @Test
+    public void percentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+        for (int p = 1; p <= 100; p++) {
+            long exact = 100L * p;
+            long approximate = histogram.percentile(p);
+            Assert.assertTrue(p + "th " + approximate, approximate <= exact && approximate >= exact * 0.93);
+        }
+        Assert.assertEquals(10000, histogram.getCount());
+        Assert.assertEquals(5000.5, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void bucketBoundsHoldTheirValues() {
+        for (long value = 0; value < 1 << 20; value += 7) {
+            int index = LatencyHistogram.index(value);
+            Assert.assertTrue(LatencyHistogram.lowerBound(index) <= value);
+            Assert.assertTrue(LatencyHistogram.lowerBound(index + 1) > value);
+        }
+        long big = Long.MAX_VALUE / 3;
+        Assert.assertTrue(LatencyHistogram.lowerBound(LatencyHistogram.index(big)) <= big);
+    }
+}
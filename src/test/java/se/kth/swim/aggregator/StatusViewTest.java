@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.aggregator;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import se.kth.swim.TrafficStats;
+import se.kth.swim.internal.MemberState;
+import se.kth.swim.msg.Status;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class StatusViewTest {
+
+    private static class Recorder implements StatusView.Listener {
+
+        final List<String> changes = new ArrayList<String>();
+
+        public void changed(int node, MemberState from, MemberState to) {
+            changes.add(node + ":" + from + "->" + to);
+        }
+    }
+
+    @Test
+    public void fullReportThenDelta() throws Exception {
+        StatusView view = new StatusView();
+        Recorder recorder = new Recorder();
+        //alive nodes include the suspected ones
+        Assert.assertTrue(view.apply(status(1, 0, true, nodes(1, 2, 3), nodes(2), nodes(4), nodes()), recorder));
+        Assert.assertEquals(Arrays.asList("1:null->ALIVE", "2:null->SUSPECT", "3:null->ALIVE", "4:null->DEAD"),
+                recorder.changes);
+        Assert.assertEquals(1, view.getSeq());
+
+        recorder.changes.clear();
+        Assert.assertTrue(view.apply(status(2, 1, false, nodes(2, 5), nodes(), nodes(3), nodes(4)), recorder));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("2:SUSPECT->ALIVE", "5:null->ALIVE", "3:ALIVE->DEAD",
+                "4:DEAD->null")), new HashSet<String>(recorder.changes));
+        Assert.assertEquals(MemberState.ALIVE, view.getState(1));
+        Assert.assertNull(view.getState(4));
+        Assert.assertEquals(2, view.getSeq());
+        Assert.assertEquals(4, view.size());
+    }
+
+    @Test
+    public void deltaFromUnknownVersionRejected() throws Exception {
+        StatusView view = new StatusView();
+        Recorder recorder = new Recorder();
+        Assert.assertFalse(view.apply(status(1, 0, false, nodes(1), nodes(), nodes(), nodes()), recorder));
+        view.apply(status(1, 0, true, nodes(1), nodes(), nodes(), nodes()), recorder);
+        Assert.assertFalse(view.apply(status(5, 3, false, nodes(2), nodes(), nodes(), nodes()), recorder));
+        Assert.assertNull(view.getState(2));
+    }
+
+    @Test
+    public void clearReportsEveryEntryGone() throws Exception {
+        StatusView view = new StatusView();
+        Recorder recorder = new Recorder();
+        view.apply(status(1, 0, true, nodes(1, 70), nodes(), nodes(2), nodes()), recorder);
+        recorder.changes.clear();
+        view.clear(recorder);
+        Assert.assertEquals(Arrays.asList("1:ALIVE->null", "2:DEAD->null", "70:ALIVE->null"), recorder.changes);
+        Assert.assertEquals(0, view.size());
+        Assert.assertEquals(-1, view.getSeq());
+    }
+
+    @Test
+    public void liveAndDeadCounts() throws Exception {
+        StatusView view = new StatusView();
+        view.apply(status(1, 0, true, nodes(1, 2, 3), nodes(3), nodes(4), nodes()), new Recorder());
+        IdBitSet watched = new IdBitSet();
+        watched.add(1);
+        watched.add(3);
+        watched.add(4);
+        Assert.assertEquals(2, view.liveCount(watched));
+        Assert.assertEquals(1, view.deadCount(watched));
+    }
+
+    private static Status status(int seq, int baseSeq, boolean full, Set<NatedAddress> alive,
+            Set<NatedAddress> suspected, Set<NatedAddress> dead, Set<NatedAddress> removed) {
+        return new Status(0, seq, baseSeq, full, alive, suspected, dead, removed, new TrafficStats());
+    }
+
+    private static Set<NatedAddress> nodes(int... ids) throws Exception {
+        Set<NatedAddress> nodes = new HashSet<NatedAddress>();
+        for (int id : ids) {
+            nodes.add(new BasicNatedAddress(new BasicAddress(InetAddress.getByName("193.10.64.1"), 10000 + id, id)));
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class ChangeLogTest {
+
+    @Test
+    public void latestChangeOrdersTheNode() throws Exception {
+        ChangeLog log = new ChangeLog();
+        log.record(node(1), 1);
+        log.record(node(2), 2);
+        log.record(node(1), 3);
+        Assert.assertEquals(Arrays.asList(node(2), node(1)), log.nodes());
+        Assert.assertEquals(2, log.size());
+    }
+
+    @Test
+    public void trimDropsAcknowledgedChanges() throws Exception {
+        ChangeLog log = new ChangeLog();
+        log.record(node(1), 1);
+        log.record(node(2), 2);
+        log.record(node(3), 3);
+        log.trim(2);
+        Assert.assertEquals(Arrays.asList(node(3)), log.nodes());
+        //a node changed again after the acknowledged version stays
+        log.record(node(1), 4);
+        log.trim(3);
+        Assert.assertEquals(Arrays.asList(node(1)), log.nodes());
+        log.trim(4);
+        Assert.assertEquals(0, log.size());
+    }
+
+    @Test
+    public void tableRecordsEveryChange() throws Exception {
+        MembershipTable table = new MembershipTable(3, new Random(1), 30);
+        table.update(node(1), MemberState.ALIVE, 0);
+        table.update(node(2), MemberState.ALIVE, 0);
+        int version = table.version();
+        table.update(node(1), MemberState.SUSPECT, 0);
+        table.changes().trim(version);
+        Assert.assertEquals(Arrays.asList(node(1)), table.changes().nodes());
+    }
+
+    private static NatedAddress node(int id) throws Exception {
+        return new BasicNatedAddress(new BasicAddress(InetAddress.getByName("193.10.64.1"), 10000 + id, id));
+    }
+}
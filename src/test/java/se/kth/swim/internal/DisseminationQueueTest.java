@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.net.InetAddress;
+import org.junit.Assert;
+import org.junit.Test;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class DisseminationQueueTest {
+
+    @Test
+    public void retransmitLimitGrowsWithLogOfGroup() {
+        Assert.assertEquals(3, DisseminationQueue.retransmitLimit(3, 1));
+        Assert.assertEquals(3, DisseminationQueue.retransmitLimit(3, 9));
+        Assert.assertEquals(6, DisseminationQueue.retransmitLimit(3, 10));
+        Assert.assertEquals(9, DisseminationQueue.retransmitLimit(3, 100));
+    }
+
+    @Test
+    public void updateRetiredAfterLimitSends() throws Exception {
+        DisseminationQueue queue = new DisseminationQueue(2);
+        Member a = member(1);
+        Member b = member(2);
+        queue.add(a);
+        queue.add(b);
+        Member[] buffer = new Member[4];
+        Assert.assertEquals(2, queue.take(buffer, 4));
+        Assert.assertEquals(2, queue.take(buffer, 4));
+        Assert.assertEquals(2, a.getCounter());
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(0, queue.take(buffer, 4));
+    }
+
+    @Test
+    public void leastDisseminatedFirst() throws Exception {
+        DisseminationQueue queue = new DisseminationQueue(5);
+        Member a = member(1);
+        Member b = member(2);
+        queue.add(a);
+        Member[] buffer = new Member[4];
+        queue.take(buffer, 1);
+        queue.add(b);
+        Assert.assertEquals(1, queue.take(buffer, 1));
+        Assert.assertSame(b, buffer[0]);
+        //a new update of a restarts its dissemination
+        queue.take(buffer, 4);
+        queue.add(a);
+        Assert.assertEquals(1, queue.take(buffer, 1));
+        Assert.assertSame(a, buffer[0]);
+        Assert.assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void budgetStopsTheTake() throws Exception {
+        DisseminationQueue queue = new DisseminationQueue(5);
+        queue.add(member(1));
+        queue.add(member(2));
+        queue.add(member(3));
+        final int[] left = {2};
+        DisseminationQueue.Budget budget = new DisseminationQueue.Budget() {
+            public boolean fits(Member member) {
+                return left[0]-- > 0;
+            }
+        };
+        Assert.assertEquals(2, queue.take(new Member[4], 4, budget));
+        Assert.assertEquals(3, queue.size());
+    }
+
+    @Test
+    public void lowerLimitRetiresLazily() throws Exception {
+        DisseminationQueue queue = new DisseminationQueue(3);
+        Member a = member(1);
+        Member b = member(2);
+        queue.add(a);
+        Member[] buffer = new Member[4];
+        queue.take(buffer, 4);
+        queue.take(buffer, 4);
+        queue.add(b);
+        queue.setLimit(2);
+        //nothing retired until a take reaches the bucket of a
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(1, queue.take(buffer, 4));
+        Assert.assertSame(b, buffer[0]);
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(1, queue.take(buffer, 4));
+        Assert.assertSame(b, buffer[0]);
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    private static Member member(int id) throws Exception {
+        BasicAddress address = new BasicAddress(InetAddress.getByName("193.10.64.1"), 10000 + id, id);
+        return new Member(new BasicNatedAddress(address), MemberState.ALIVE, 0);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.net.InetAddress;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class MemberSamplerTest {
+
+    @Test
+    public void distinctMembersWithoutExcluded() throws Exception {
+        Random rand = new Random(3);
+        ProbeList list = list(rand, 30);
+        MemberSampler sampler = new MemberSampler(rand);
+        Member exclude = list.array()[4];
+        Member[] out = new Member[10];
+        for (int round = 0; round < 100; round++) {
+            Assert.assertEquals(10, sampler.sample(list, 10, exclude, out));
+            Set<Integer> ids = new HashSet<Integer>();
+            for (Member member : out) {
+                Assert.assertNotSame(exclude, member);
+                Assert.assertTrue(ids.add(member.getId()));
+            }
+        }
+    }
+
+    @Test
+    public void probeOrderUntouched() throws Exception {
+        Random rand = new Random(4);
+        ProbeList list = list(rand, 20);
+        Member[] before = new Member[20];
+        System.arraycopy(list.array(), 0, before, 0, 20);
+        new MemberSampler(rand).sample(list, 5, null, new Member[5]);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertSame(before[i], list.array()[i]);
+            Assert.assertEquals(i, before[i].probeIndex);
+        }
+    }
+
+    @Test
+    public void fewerMembersThanAsked() throws Exception {
+        Random rand = new Random(5);
+        ProbeList list = list(rand, 4);
+        Member[] out = new Member[10];
+        MemberSampler sampler = new MemberSampler(rand);
+        Assert.assertEquals(3, sampler.sample(list, 10, list.array()[0], out));
+        Assert.assertEquals(4, sampler.sample(list, 10, null, out));
+        Assert.assertEquals(0, sampler.sample(new ProbeList(rand), 3, null, out));
+    }
+
+    private static ProbeList list(Random rand, int count) throws Exception {
+        InetAddress ip = InetAddress.getByName("193.10.64.1");
+        ProbeList list = new ProbeList(rand);
+        for (int i = 0; i < count; i++) {
+            list.add(new Member(new BasicNatedAddress(new BasicAddress(ip, 10000 + i, i + 1)), MemberState.ALIVE, 0));
+        }
+        return list;
+    }
+}
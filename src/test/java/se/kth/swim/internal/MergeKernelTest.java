@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.net.InetAddress;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class MergeKernelTest {
+
+    @Test
+    public void precedence() {
+        Assert.assertEquals(MergeKernel.Action.ALIVE, MergeKernel.merge(MemberState.SUSPECT, 2, MemberState.ALIVE, 3));
+        Assert.assertEquals(MergeKernel.Action.IGNORE, MergeKernel.merge(MemberState.SUSPECT, 2, MemberState.ALIVE, 2));
+        Assert.assertEquals(MergeKernel.Action.SUSPECT, MergeKernel.merge(MemberState.ALIVE, 2, MemberState.SUSPECT, 2));
+        Assert.assertEquals(MergeKernel.Action.CONFIRM, MergeKernel.merge(MemberState.SUSPECT, 2, MemberState.SUSPECT, 2));
+        Assert.assertEquals(MergeKernel.Action.SUSPECT, MergeKernel.merge(MemberState.SUSPECT, 2, MemberState.SUSPECT, 3));
+        Assert.assertEquals(MergeKernel.Action.DEAD, MergeKernel.merge(MemberState.ALIVE, 2, MemberState.DEAD, 1));
+        Assert.assertEquals(MergeKernel.Action.IGNORE, MergeKernel.merge(MemberState.DEAD, 2, MemberState.ALIVE, 2));
+        Assert.assertEquals(MergeKernel.Action.REJOIN, MergeKernel.merge(MemberState.DEAD, 2, MemberState.ALIVE, 3));
+        Assert.assertEquals(MergeKernel.Action.ALIVE, MergeKernel.merge(null, 0, MemberState.ALIVE, 7));
+        Assert.assertEquals(MergeKernel.Action.DEAD, MergeKernel.merge(null, 0, MemberState.DEAD, 7));
+    }
+
+    @Test
+    public void staleDeathKeepsIncarnation() throws Exception {
+        MembershipTable table = new MembershipTable(3, new Random(1), 30);
+        NatedAddress node = node(1);
+        apply(table, node, MemberState.ALIVE, 5);
+        apply(table, node, MemberState.DEAD, 3);
+        Assert.assertEquals(MemberState.DEAD, table.getState(node));
+        Assert.assertEquals(5, table.get(node).getIncarnation());
+
+        //older than the incarnation the node was alive at, it must not flap back
+        Assert.assertEquals(MergeKernel.Action.IGNORE, apply(table, node, MemberState.ALIVE, 4));
+        Assert.assertEquals(MemberState.DEAD, table.getState(node));
+        Assert.assertEquals(MergeKernel.Action.REJOIN, apply(table, node, MemberState.ALIVE, 6));
+        Assert.assertEquals(6, table.get(node).getIncarnation());
+    }
+
+    @Test
+    public void incarnationNeverDecreases() throws Exception {
+        NatedAddress node = node(1);
+        Assert.assertEquals(4, MergeKernel.incarnation(null, 4));
+        Assert.assertEquals(5, MergeKernel.incarnation(new Member(node, MemberState.ALIVE, 5), 3));
+        Assert.assertEquals(8, MergeKernel.incarnation(new Member(node, MemberState.ALIVE, 5), 8));
+    }
+
+    @Test
+    public void selfRefutesSuspicionOnce() {
+        Assert.assertEquals(4, MergeKernel.mergeSelf(3, MemberState.SUSPECT, 3));
+        Assert.assertEquals(6, MergeKernel.mergeSelf(3, MemberState.DEAD, 5));
+        Assert.assertEquals(4, MergeKernel.mergeSelf(4, MemberState.SUSPECT, 3));
+        Assert.assertEquals(4, MergeKernel.mergeSelf(4, MemberState.ALIVE, 9));
+    }
+
+    /**
+     * applies an update the way the failure detector does
+     */
+    private static MergeKernel.Action apply(MembershipTable table, NatedAddress node, MemberState remote, int incarnation) {
+        Member member = table.get(node);
+        MergeKernel.Action action = MergeKernel.merge(member, remote, incarnation);
+        switch (action) {
+            case ALIVE:
+            case REJOIN:
+                table.update(node, MemberState.ALIVE, MergeKernel.incarnation(member, incarnation));
+                break;
+            case SUSPECT:
+                table.update(node, MemberState.SUSPECT, incarnation);
+                break;
+            case DEAD:
+                table.update(node, MemberState.DEAD, MergeKernel.incarnation(member, incarnation));
+                break;
+            default:
+                break;
+        }
+        return action;
+    }
+
+    private static NatedAddress node(int id) throws Exception {
+        return new BasicNatedAddress(new BasicAddress(InetAddress.getByName("193.10.64.1"), 10000 + id, id));
+    }
+}
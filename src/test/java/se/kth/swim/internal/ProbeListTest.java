@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.net.InetAddress;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class ProbeListTest {
+
+    @Test
+    public void everyMemberOncePerPass() throws Exception {
+        ProbeList probes = new ProbeList(new Random(5));
+        Member[] members = members(50);
+        for (Member member : members) {
+            probes.add(member);
+            probes.add(member);
+        }
+        Assert.assertEquals(50, probes.size());
+        for (int pass = 0; pass < 3; pass++) {
+            Set<Integer> probed = new HashSet<Integer>();
+            for (int i = 0; i < members.length; i++) {
+                Assert.assertTrue(probed.add(probes.next().getId()));
+            }
+            Assert.assertEquals(50, probed.size());
+        }
+    }
+
+    @Test
+    public void joinerProbedInTheCurrentPass() throws Exception {
+        ProbeList probes = new ProbeList(new Random(7));
+        Member[] members = members(21);
+        for (int i = 0; i < 20; i++) {
+            probes.add(members[i]);
+        }
+        Set<Integer> probed = new HashSet<Integer>();
+        for (int i = 0; i < 10; i++) {
+            probed.add(probes.next().getId());
+        }
+        probes.add(members[20]);
+        for (int i = 0; i < 11; i++) {
+            Assert.assertTrue(probed.add(probes.next().getId()));
+        }
+        Assert.assertTrue(probed.contains(members[20].getId()));
+    }
+
+    @Test
+    public void removedMemberNeverProbed() throws Exception {
+        ProbeList probes = new ProbeList(new Random(9));
+        Member[] members = members(10);
+        for (Member member : members) {
+            probes.add(member);
+        }
+        Member probed = probes.next();
+        Member unprobed = probes.next();
+        probes.next();
+        probes.remove(probed);
+        probes.remove(unprobed);
+        Assert.assertFalse(probes.contains(probed));
+        Assert.assertEquals(8, probes.size());
+        //the rest of the pass and a whole next one
+        for (int i = 0; i < 7 + 8; i++) {
+            Member next = probes.next();
+            Assert.assertNotSame(probed, next);
+            Assert.assertNotSame(unprobed, next);
+        }
+    }
+
+    @Test
+    public void emptyListHasNoProbe() {
+        Assert.assertNull(new ProbeList(new Random(1)).next());
+    }
+
+    private static Member[] members(int count) throws Exception {
+        InetAddress ip = InetAddress.getByName("193.10.64.1");
+        Member[] members = new Member[count];
+        for (int i = 0; i < count; i++) {
+            members[i] = new Member(new BasicNatedAddress(new BasicAddress(ip, 10000 + i, i + 1)), MemberState.ALIVE, 0);
+        }
+        return members;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.net.InetAddress;
+import org.junit.Assert;
+import org.junit.Test;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class ProbeTrackerTest {
+
+    private static final int CAPACITY = 4;
+
+    @Test
+    public void relaysDoNotOverwriteProbes() throws Exception {
+        ProbeTracker tracker = new ProbeTracker(CAPACITY);
+        RelayTable relays = new RelayTable(CAPACITY);
+        NatedAddress target = node(1);
+        NatedAddress other = node(2);
+        int nextRelaySeq = 1;
+        ProbeTracker.Probe probe = tracker.start(target);
+        //many more relays than slots between the probe and its timeout
+        for (int i = 0; i < 10 * CAPACITY; i++) {
+            relays.put(nextRelaySeq, other, target, i);
+            Assert.assertNull(tracker.get(nextRelaySeq));
+            nextRelaySeq += 2;
+        }
+        Assert.assertSame(probe, tracker.get(probe.getSeq(), target));
+        Assert.assertNull(relays.remove(probe.getSeq(), target));
+
+        ProbeTracker.Probe next = tracker.start(other);
+        Assert.assertSame(probe, tracker.get(probe.getSeq()));
+        Assert.assertSame(next, tracker.get(next.getSeq(), other));
+    }
+
+    @Test
+    public void slotReusedAfterCapacityProbes() throws Exception {
+        ProbeTracker tracker = new ProbeTracker(CAPACITY);
+        NatedAddress target = node(1);
+        int first = tracker.start(target).getSeq();
+        for (int i = 1; i < CAPACITY; i++) {
+            tracker.start(node(i + 1));
+        }
+        Assert.assertNotNull(tracker.get(first, target));
+        ProbeTracker.Probe reused = tracker.start(node(9));
+        Assert.assertNull(tracker.get(first));
+        Assert.assertSame(reused, tracker.get(reused.getSeq(), node(9)));
+    }
+
+    @Test
+    public void finishedOrWrongTargetIsNotOutstanding() throws Exception {
+        ProbeTracker tracker = new ProbeTracker(CAPACITY);
+        ProbeTracker.Probe probe = tracker.start(node(1));
+        int seq = probe.getSeq();
+        Assert.assertNull(tracker.get(seq, node(2)));
+        tracker.finish(probe);
+        Assert.assertNull(tracker.get(seq));
+    }
+
+    private static NatedAddress node(int id) throws Exception {
+        return new BasicNatedAddress(new BasicAddress(InetAddress.getByName("193.10.64.1"), 10000 + id, id));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.net.InetAddress;
+import org.junit.Assert;
+import org.junit.Test;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class RelayTableTest {
+
+    private static final int CAPACITY = 4;
+
+    @Test
+    public void answerMatchedOnSeqAndTarget() throws Exception {
+        RelayTable relays = new RelayTable(CAPACITY);
+        relays.put(1, node(1), node(2), 7);
+        Assert.assertNull(relays.remove(1, node(3)));
+        Assert.assertNull(relays.remove(5, node(2)));
+
+        RelayTable.Entry entry = relays.remove(1, node(2));
+        Assert.assertNotNull(entry);
+        Assert.assertEquals(7, entry.requesterSeq);
+        Assert.assertEquals(node(1), entry.requester);
+        //a duplicate answer finds nothing
+        Assert.assertNull(relays.remove(1, node(2)));
+    }
+
+    @Test
+    public void slotReusedByNewerRequest() throws Exception {
+        RelayTable relays = new RelayTable(CAPACITY);
+        relays.put(1, node(1), node(2), 7);
+        relays.put(1 + CAPACITY, node(3), node(4), 8);
+        Assert.assertNull(relays.get(1));
+        Assert.assertNull(relays.remove(1, node(2)));
+        Assert.assertEquals(8, relays.get(1 + CAPACITY).requesterSeq);
+    }
+
+    @Test
+    public void removeForgetsOnlyItsOwnRequest() throws Exception {
+        RelayTable relays = new RelayTable(CAPACITY);
+        relays.put(1 + CAPACITY, node(1), node(2), 7);
+        //timer of an older request that lived in the same slot
+        relays.remove(1);
+        Assert.assertNotNull(relays.get(1 + CAPACITY));
+        relays.remove(1 + CAPACITY);
+        Assert.assertNull(relays.get(1 + CAPACITY));
+    }
+
+    private static NatedAddress node(int id) throws Exception {
+        return new BasicNatedAddress(new BasicAddress(InetAddress.getByName("193.10.64.1"), 10000 + id, id));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.net.InetAddress;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class TombstoneStoreTest {
+
+    private static final long TTL = 10;
+
+    @Test
+    public void deadMemberForgottenAfterTtl() throws Exception {
+        MembershipTable table = new MembershipTable(3, new Random(1), TTL);
+        NatedAddress node = node(1);
+        table.reapTombstones(5);
+        table.update(node, MemberState.DEAD, 0);
+        Assert.assertEquals(0, table.reapTombstones(5 + TTL - 1));
+        Assert.assertEquals(MemberState.DEAD, table.getState(node));
+        Assert.assertEquals(1, table.reapTombstones(5 + TTL));
+        Assert.assertNull(table.get(node));
+        Assert.assertEquals(0, table.size());
+    }
+
+    @Test
+    public void rejoinedMemberKept() throws Exception {
+        MembershipTable table = new MembershipTable(3, new Random(1), TTL);
+        NatedAddress node = node(1);
+        table.update(node, MemberState.DEAD, 0);
+        table.reapTombstones(3);
+        table.update(node, MemberState.ALIVE, 1);
+        Assert.assertEquals(0, table.reapTombstones(TTL));
+        Assert.assertEquals(MemberState.ALIVE, table.getState(node));
+    }
+
+    @Test
+    public void secondDeathKeepsItsOwnTtl() throws Exception {
+        MembershipTable table = new MembershipTable(3, new Random(1), TTL);
+        NatedAddress node = node(1);
+        table.update(node, MemberState.DEAD, 0);
+        table.reapTombstones(2);
+        table.update(node, MemberState.ALIVE, 1);
+        table.reapTombstones(5);
+        table.update(node, MemberState.DEAD, 1);
+        //the first tombstone expired but no longer stands for the member
+        Assert.assertEquals(0, table.reapTombstones(TTL));
+        Assert.assertEquals(MemberState.DEAD, table.getState(node));
+        Assert.assertEquals(1, table.reapTombstones(5 + TTL));
+        Assert.assertNull(table.get(node));
+    }
+
+    private static NatedAddress node(int id) throws Exception {
+        return new BasicNatedAddress(new BasicAddress(InetAddress.getByName("193.10.64.1"), 10000 + id, id));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.msg.serializer;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import se.kth.swim.NodeAndCounter;
+import se.kth.swim.internal.MemberState;
+import se.kth.swim.internal.MembershipTable;
+import se.kth.swim.internal.PiggybackAssembler;
+import se.kth.swim.msg.net.PiggyPong;
+import se.kth.swim.msg.net.PiggyPongReq;
+import se.sics.p2ptoolbox.util.network.NatType;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class SwimCodecTest {
+
+    private static final int MAX_MESSAGE_SIZE = 256;
+
+    @Test
+    public void pongRoundTrip() throws Exception {
+        NatedAddress[] nodes = nodes(40);
+        Set<NodeAndCounter> alive = new HashSet<NodeAndCounter>();
+        Set<NodeAndCounter> suspect = new HashSet<NodeAndCounter>();
+        Set<NodeAndCounter> dead = new HashSet<NodeAndCounter>();
+        for (int i = 0; i < nodes.length; i++) {
+            //large and small incarnations next to each other in id order
+            int incarnation = i % 2 == 0 ? 100000 + i : 0;
+            Set<NodeAndCounter> updates = i % 3 == 0 ? alive : (i % 3 == 1 ? suspect : dead);
+            updates.add(new NodeAndCounter(nodes[i], incarnation));
+        }
+        PiggyPong pong = new PiggyPong(nodes[0], nodes[1], alive, suspect, dead, nodes[1], 7);
+
+        byte[] bytes = SwimCodec.encode(pong);
+        Assert.assertEquals(SwimCodec.encodedSize(pong), bytes.length);
+        PiggyPong decoded = (PiggyPong) SwimCodec.decode(ByteBuffer.wrap(bytes));
+
+        Assert.assertEquals(nodes[0], decoded.getHeader().getSource());
+        Assert.assertEquals(nodes[1], decoded.getHeader().getDestination());
+        Assert.assertEquals(7, decoded.getSeqNbr());
+        Assert.assertEquals(byId(alive), byId(decoded.getAliveNodes()));
+        Assert.assertEquals(byId(suspect), byId(decoded.getSuspNodes()));
+        Assert.assertEquals(byId(dead), byId(decoded.getDeadNodes()));
+    }
+
+    @Test
+    public void assembledPongFitsBudget() throws Exception {
+        NatedAddress[] nodes = nodes(200);
+        Random rand = new Random(1234);
+        MembershipTable table = new MembershipTable(3, rand, 30);
+        MemberState[] states = MemberState.values();
+        for (int i = 2; i < nodes.length; i++) {
+            //incarnations far apart between neighbours in id order
+            int incarnation = i % 2 == 0 ? 100 + rand.nextInt(1 << 20) : 0;
+            table.update(nodes[i], states[i % states.length], incarnation);
+        }
+        PiggybackAssembler assembler = new PiggybackAssembler(MAX_MESSAGE_SIZE);
+        for (int round = 0; round < 20; round++) {
+            assembler.nextRound();
+            PiggybackAssembler.Snapshot snapshot = assembler.assemble(table, nodes[0], nodes[1],
+                    new NodeAndCounter(nodes[0], round));
+            PiggyPong pong = new PiggyPong(nodes[0], nodes[1], snapshot.alive, snapshot.suspect, snapshot.dead, nodes[1], round);
+
+            int size = SwimCodec.encodedSize(pong);
+            Assert.assertTrue("pong of " + size + " bytes", size <= MAX_MESSAGE_SIZE);
+            PiggyPong decoded = (PiggyPong) SwimCodec.decode(ByteBuffer.wrap(SwimCodec.encode(pong)));
+            Assert.assertEquals(byId(snapshot.alive), byId(decoded.getAliveNodes()));
+            Assert.assertEquals(byId(snapshot.suspect), byId(decoded.getSuspNodes()));
+            Assert.assertEquals(byId(snapshot.dead), byId(decoded.getDeadNodes()));
+        }
+    }
+
+    @Test
+    public void forwardedPongReqFitsBudget() throws Exception {
+        NatedAddress[] nodes = nodes(200);
+        Random rand = new Random(4321);
+        MembershipTable table = new MembershipTable(3, rand, 30);
+        MemberState[] states = MemberState.values();
+        for (int i = 3; i < nodes.length; i++) {
+            table.update(nodes[i], states[i % states.length], rand.nextInt(1 << 20));
+        }
+        //the requester sits behind parents the relayed pong knows nothing of
+        NatedAddress requester = natedBehind(1000, 6, 2000);
+        NatedAddress relay = nodes[2];
+        NatedAddress target = nodes[0];
+        PiggybackAssembler.Snapshot sent = new PiggybackAssembler(MAX_MESSAGE_SIZE).assemble(table, target, relay,
+                new NodeAndCounter(target, 3));
+        PiggyPongReq raw = new PiggyPongReq(relay, requester, sent.alive, sent.suspect, sent.dead, target, 5);
+        Assert.assertTrue(SwimCodec.encodedSize(raw) > MAX_MESSAGE_SIZE);
+
+        PiggybackAssembler.Snapshot forwarded = new PiggybackAssembler(MAX_MESSAGE_SIZE).forward(relay, requester, target,
+                sent.alive, sent.suspect, sent.dead);
+        PiggyPongReq req = new PiggyPongReq(relay, requester, forwarded.alive, forwarded.suspect, forwarded.dead, target, 5);
+        int size = SwimCodec.encodedSize(req);
+        Assert.assertTrue("pong req of " + size + " bytes", size <= MAX_MESSAGE_SIZE);
+        Assert.assertEquals(Integer.valueOf(3), byId(forwarded.alive).get(target.getId()));
+        PiggyPongReq decoded = (PiggyPongReq) SwimCodec.decode(ByteBuffer.wrap(SwimCodec.encode(req)));
+        Assert.assertEquals(byId(forwarded.alive), byId(decoded.getAliveNodes()));
+        Assert.assertEquals(byId(forwarded.suspect), byId(decoded.getSuspNodes()));
+        Assert.assertEquals(byId(forwarded.dead), byId(decoded.getDeadNodes()));
+    }
+
+    @Test
+    public void parentDictionaryStaysSmall() throws Exception {
+        int maxMessageSize = 1 << 16;
+        NatedAddress[] nodes = nodes(4);
+        MembershipTable table = new MembershipTable(3, new Random(99), 30);
+        for (int i = 0; i < 100; i++) {
+            //two parents of its own per node, 200 in all
+            table.update(natedBehind(100 + i, 2, 1000 + 2 * i), MemberState.ALIVE, i);
+        }
+        PiggybackAssembler.Snapshot snapshot = new PiggybackAssembler(maxMessageSize).assemble(table, nodes[0], nodes[1],
+                new NodeAndCounter(nodes[0], 0));
+        PiggyPong pong = new PiggyPong(nodes[0], nodes[1], snapshot.alive, snapshot.suspect, snapshot.dead, nodes[1], 1);
+
+        Set<Integer> parents = new HashSet<Integer>();
+        for (NodeAndCounter update : snapshot.alive) {
+            if (!update.getNode().isOpen()) {
+                for (NatedAddress parent : update.getNode().getParents()) {
+                    parents.add(parent.getId());
+                }
+            }
+        }
+        Assert.assertTrue(parents.size() + " parents", parents.size() <= SwimCodec.MAX_SMALL_DICTIONARY);
+        Assert.assertTrue(snapshot.alive.size() > 1);
+        PiggyPong decoded = (PiggyPong) SwimCodec.decode(ByteBuffer.wrap(SwimCodec.encode(pong)));
+        Assert.assertEquals(byId(snapshot.alive), byId(decoded.getAliveNodes()));
+    }
+
+    private static Map<Integer, Integer> byId(Set<NodeAndCounter> updates) {
+        Map<Integer, Integer> incarnations = new HashMap<Integer, Integer>();
+        for (NodeAndCounter update : updates) {
+            incarnations.put(update.getNode().getId(), update.getCounter());
+        }
+        return incarnations;
+    }
+
+    /**
+     * open nodes first, every fourth node nated behind two of them
+     */
+    private static NatedAddress[] nodes(int count) throws Exception {
+        InetAddress ip = InetAddress.getByName("193.10.64.1");
+        NatedAddress[] nodes = new NatedAddress[count];
+        for (int i = 0; i < count; i++) {
+            BasicAddress base = new BasicAddress(ip, 10000 + i, i + 1);
+            if (i < 4 || i % 4 != 0) {
+                nodes[i] = new BasicNatedAddress(base);
+            } else {
+                Set<NatedAddress> parents = new HashSet<NatedAddress>();
+                parents.add(nodes[i % 3 + 1]);
+                parents.add(nodes[1]);
+                nodes[i] = new BasicNatedAddress(base, NatType.NAT, parents);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * node id behind parentCount open parents with ids from firstParent on
+     */
+    private static NatedAddress natedBehind(int id, int parentCount, int firstParent) throws Exception {
+        InetAddress ip = InetAddress.getByName("193.10.65.1");
+        Set<NatedAddress> parents = new HashSet<NatedAddress>();
+        for (int i = 0; i < parentCount; i++) {
+            parents.add(new BasicNatedAddress(new BasicAddress(ip, 20000 + firstParent + i, firstParent + i)));
+        }
+        return new BasicNatedAddress(new BasicAddress(ip, 10000 + id, id), NatType.NAT, parents);
+    }
+}